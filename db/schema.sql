@@ -2,109 +2,27 @@
 CREATE DATABASE IF NOT EXISTS library_db CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
 CREATE USER IF NOT EXISTS 'library_admin'@'%' IDENTIFIED BY 'library_admin';
 GRANT ALL ON library_db.* TO 'library_admin'@'%';
+-- 只读账户：单实例上验证读写分离时作为 db.read.user；真正的从库上还需授予 REPLICATION CLIENT 以读取复制延迟
+CREATE USER IF NOT EXISTS 'library_reader'@'%' IDENTIFIED BY 'library_reader';
+GRANT SELECT ON library_db.* TO 'library_reader'@'%';
 USE library_db;
 
--- 基础表
-CREATE TABLE categories (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT,
-    name VARCHAR(100) NOT NULL UNIQUE
-);
-
-CREATE TABLE publishers (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT,
-    name VARCHAR(150) NOT NULL UNIQUE
-);
-
-CREATE TABLE books (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT,
-    isbn VARCHAR(32) NOT NULL UNIQUE,
-    title VARCHAR(200) NOT NULL,
-    category_id BIGINT NOT NULL,
-    publisher_id BIGINT NOT NULL,
-    published_date DATE,
-    total_copies INT NOT NULL,
-    available_copies INT NOT NULL,
-    CONSTRAINT fk_books_category FOREIGN KEY (category_id) REFERENCES categories(id),
-    CONSTRAINT fk_books_publisher FOREIGN KEY (publisher_id) REFERENCES publishers(id)
-);
-
-CREATE TABLE readers (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT,
-    name VARCHAR(150) NOT NULL,
-    card_number VARCHAR(50) NOT NULL UNIQUE,
-    card_expiry DATE NOT NULL,
-    outstanding_fine DECIMAL(10,2) NOT NULL DEFAULT 0
-);
-
-CREATE TABLE loans (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT,
-    book_id BIGINT NOT NULL,
-    reader_id BIGINT NOT NULL,
-    borrowed_date DATE NOT NULL,
-    due_date DATE NOT NULL,
-    returned_date DATE NULL,
-    renewals INT NOT NULL DEFAULT 0,
-    fine_paid DECIMAL(10,2) NOT NULL DEFAULT 0,
-    CONSTRAINT fk_loans_book FOREIGN KEY (book_id) REFERENCES books(id),
-    CONSTRAINT fk_loans_reader FOREIGN KEY (reader_id) REFERENCES readers(id)
-);
-
-CREATE TABLE payments (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT,
-    reader_id BIGINT NOT NULL,
-    loan_id BIGINT NULL,
-    amount DECIMAL(10,2) NOT NULL,
-    paid_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-    CONSTRAINT fk_payments_reader FOREIGN KEY (reader_id) REFERENCES readers(id),
-    CONSTRAINT fk_payments_loan FOREIGN KEY (loan_id) REFERENCES loans(id)
-);
-
--- 触发器：借书时减少在册数量
-DELIMITER $$
-CREATE TRIGGER trg_loans_insert AFTER INSERT ON loans
-FOR EACH ROW
-BEGIN
-    UPDATE books SET available_copies = available_copies - 1 WHERE id = NEW.book_id;
-END$$
-DELIMITER ;
-
--- 触发器：还书时增加在册数量
-DELIMITER $$
-CREATE TRIGGER trg_loans_update AFTER UPDATE ON loans
-FOR EACH ROW
-BEGIN
-    IF NEW.returned_date IS NOT NULL AND OLD.returned_date IS NULL THEN
-        UPDATE books SET available_copies = available_copies + 1 WHERE id = NEW.book_id;
-    END IF;
-END$$
-DELIMITER ;
-
--- 视图：图书库存统计
-CREATE OR REPLACE VIEW view_book_stock AS
-SELECT b.isbn, b.title, b.total_copies AS total_count, b.available_copies AS available_count
-FROM books b;
-
--- 存储过程：查询读者借阅情况
-DELIMITER $$
-CREATE PROCEDURE get_reader_loans(IN p_reader_id BIGINT)
-BEGIN
-    SELECT l.id AS loan_id,
-           b.title AS book_title,
-           l.borrowed_date,
-           l.due_date,
-           l.returned_date,
-           l.renewals,
-           l.fine_paid
-    FROM loans l
-    JOIN books b ON b.id = l.book_id
-    WHERE l.reader_id = p_reader_id
-    ORDER BY l.borrowed_date DESC;
-END$$
-DELIMITER ;
-
--- 示例数据
-INSERT INTO categories(name) VALUES ('计算机'), ('文学');
-INSERT INTO publishers(name) VALUES ('机械工业出版社'), ('清华大学出版社');
-INSERT INTO books(isbn, title, category_id, publisher_id, published_date, total_copies, available_copies)
-VALUES ('978-7-121-15535-2', 'Java 实战', 1, 1, '2020-01-01', 10, 10);
-INSERT INTO readers(name, card_number, card_expiry) VALUES ('示例读者', 'CARD-001', DATE_ADD(CURDATE(), INTERVAL 1 YEAR));
+-- 表、触发器、视图、存储过程和示例数据由版本化迁移脚本维护：
+--   src/main/resources/db/migration/V<版本>__<描述>.sql
+-- 应用启动时 SchemaMigrator 会按版本顺序执行尚未执行的脚本，并记录到 schema_version 表。
+-- 目前的脚本依次为：
+--   V1__baseline.sql         基础表、触发器、视图、存储过程和示例数据
+--   V2__search_indexes.sql   书名、读者姓名的全文索引
+--   V3__overdue_fines.sql    逾期罚金计提
+--   V4__event_outbox.sql     跨终端变更事件
+--   V5__reservations.sql     预约排队
+--   V6__book_copies.sql      按册管理馆藏
+--   V7__borrowing_policy.sql 借阅规则
+--   V8__loan_fine_prepaid.sql 还书前的罚金预缴
+-- 脚本中的 CREATE INDEX、ADD COLUMN、ADD CONSTRAINT 等语句并不都能重复执行：例如 V1 末尾为旧库补建的索引
+-- 在新库上已随建表创建，会报 ERROR 1061。SchemaMigrator 只跳过这类“已存在”错误（1060/1061/1826/3822），
+-- 因此建议直接启动应用由它建库。需要在应用启动前手工预建结构时，必须按版本顺序执行全部脚本，
+-- 并加 --force 让 mysql 在这些错误后继续执行，例如：
+--   mysql --force -u library_admin -p library_db < src/main/resources/db/migration/V1__baseline.sql
+-- 加 --force 后其他错误同样不会中断执行，需检查输出中只有上述“已存在”错误。
+-- 手工执行后应用首次启动仍会按版本执行这些脚本并补记 schema_version，已存在的对象照样被跳过。
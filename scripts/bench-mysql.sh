@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+# 启动一个本地 MySQL 供基准测试和压测使用；表结构由应用启动时自动创建。
+set -euo pipefail
+
+NAME=${BENCH_MYSQL_NAME:-library-bench-mysql}
+PORT=${BENCH_MYSQL_PORT:-3306}
+
+if ! docker ps --format '{{.Names}}' | grep -qx "$NAME"; then
+    docker rm -f "$NAME" >/dev/null 2>&1 || true
+    docker run -d --name "$NAME" -p "$PORT":3306 \
+        -e MYSQL_ROOT_PASSWORD=secret \
+        -e MYSQL_DATABASE=library_db \
+        -e MYSQL_USER=library_admin \
+        -e MYSQL_PASSWORD=library_admin \
+        mysql:8.0 >/dev/null
+fi
+
+echo "等待 MySQL 就绪..."
+until docker exec "$NAME" mysqladmin ping -h 127.0.0.1 -uroot -psecret --silent >/dev/null 2>&1; do
+    sleep 1
+done
+echo "MySQL 已就绪：jdbc:mysql://localhost:$PORT/library_db"
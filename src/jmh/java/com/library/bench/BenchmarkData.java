@@ -0,0 +1,34 @@
+package com.library.bench;
+
+import com.library.repository.LibraryRepository;
+import com.library.service.LibraryService;
+import com.library.tools.DataGenerator;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.sql.SQLException;
+
+/**
+ * 基准测试共享的数据集。规模通过系统属性 bench.books、bench.readers、bench.loans 配置，
+ * 首次运行时由 {@link DataGenerator} 写入数据库，之后只补足差额。
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData {
+    LibraryRepository repository;
+    LibraryService service;
+    long[] bookIds;
+    long[] readerIds;
+
+    @Setup
+    public void seed() throws SQLException {
+        int books = Integer.getInteger("bench.books", 10_000);
+        int readers = Integer.getInteger("bench.readers", 5_000);
+        int loans = Integer.getInteger("bench.loans", 100_000);
+        DataGenerator.Dataset dataset = new DataGenerator(42).seed(books, readers, loans, 50);
+        repository = new LibraryRepository();
+        service = new LibraryService(repository, 150);
+        bookIds = dataset.bookIds();
+        readerIds = dataset.readerIds();
+    }
+}
@@ -0,0 +1,81 @@
+package com.library.bench;
+
+import com.library.config.DatabaseManager;
+import com.library.model.ReaderStanding;
+import com.library.repository.LibraryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 借阅规则给每次借阅增加的开销：借阅事务的第一条语句锁定读者行并取出读者状况（与借阅事务执行同一条 SQL），规则本身从内存读取。
+ * 每个线程持有一个连接，不计连接池的取还；{@code lockedStanding} 在事务内执行这条加锁查询后回滚，
+ * {@code emptyTransaction} 只开启并回滚事务，两者之差即规则检查给借阅增加的延迟，p99 应低于 1 毫秒。
+ * 借阅的总延迟见 {@link RepositoryBenchmark#borrowBook}。
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EligibilityBenchmark {
+    private static final String LOCK_STANDING = LibraryRepository.lockReaderStandingsSql(1);
+
+    @State(Scope.Thread)
+    public static class Session {
+        Connection connection;
+
+        @Setup
+        public void open() throws SQLException {
+            connection = DatabaseManager.getDataSource().getConnection();
+            connection.setAutoCommit(false);
+        }
+
+        @TearDown
+        public void close() throws SQLException {
+            connection.rollback();
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public String lockedStanding(BenchmarkData data, Session session) throws SQLException {
+        long readerId = data.readerIds[ThreadLocalRandom.current().nextInt(data.readerIds.length)];
+        try (PreparedStatement statement = session.connection.prepareStatement(LOCK_STANDING)) {
+            statement.setLong(1, readerId);
+            ResultSet rs = statement.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("读者不存在");
+            }
+            ReaderStanding standing = new ReaderStanding(rs.getLong("id"), rs.getBoolean("card_expired"),
+                    rs.getLong("outstanding_fine_cents"), rs.getInt("open_loans"));
+            return data.repository.borrowingPolicy().denyBorrow(standing, 0);
+        } finally {
+            session.connection.rollback();
+        }
+    }
+
+    @Benchmark
+    public boolean emptyTransaction(Session session) throws SQLException {
+        try (PreparedStatement statement = session.connection.prepareStatement("SELECT 1")) {
+            return statement.executeQuery().next();
+        } finally {
+            session.connection.rollback();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.library.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// 微基准：只比较以分为单位的 long 与 BigDecimal 在逐笔计算罚金、按读者汇总差额时的开销，纯计算，不需要数据库。
+// 生产中的计提在 SQL 中完成，不执行这段循环；夜间计提的实际耗时见 OverdueAccrualBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FineAccrualBenchmark {
+    private static final long DAILY_FINE_CENTS = 150;
+    private static final BigDecimal DAILY_FINE = new BigDecimal("1.50");
+
+    @Param({"1000000"})
+    public int loans;
+
+    @Param({"50000"})
+    public int readers;
+
+    private int[] readerOf;
+    private int[] overdueDays;
+    private long[] accruedCents;
+    private BigDecimal[] accrued;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        readerOf = new int[loans];
+        overdueDays = new int[loans];
+        accruedCents = new long[loans];
+        accrued = new BigDecimal[loans];
+        for (int i = 0; i < loans; i++) {
+            readerOf[i] = random.nextInt(readers);
+            overdueDays[i] = random.nextInt(60);
+            // 上次计提在一天前，约一成借阅今天刚逾期
+            int previousDays = Math.max(0, overdueDays[i] - 1);
+            accruedCents[i] = previousDays * DAILY_FINE_CENTS;
+            accrued[i] = DAILY_FINE.multiply(BigDecimal.valueOf(previousDays));
+        }
+    }
+
+    @Benchmark
+    public long[] longCents() {
+        long[] delta = new long[readers];
+        for (int i = 0; i < loans; i++) {
+            long fine = overdueDays[i] * DAILY_FINE_CENTS;
+            if (fine != accruedCents[i]) {
+                delta[readerOf[i]] += fine - accruedCents[i];
+            }
+        }
+        return delta;
+    }
+
+    @Benchmark
+    public BigDecimal[] bigDecimal() {
+        BigDecimal[] delta = new BigDecimal[readers];
+        for (int i = 0; i < loans; i++) {
+            BigDecimal fine = DAILY_FINE.multiply(BigDecimal.valueOf(overdueDays[i]));
+            if (fine.compareTo(accrued[i]) != 0) {
+                BigDecimal change = fine.subtract(accrued[i]);
+                int reader = readerOf[i];
+                delta[reader] = delta[reader] == null ? change : delta[reader].add(change);
+            }
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,41 @@
+package com.library.bench;
+
+import com.library.service.LibraryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// 纯计算，不需要数据库
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FineBenchmark {
+    private LibraryService service;
+    private LocalDate dueDate;
+    private LocalDate returnedDate;
+
+    @Setup
+    public void setUp() {
+        service = new LibraryService(null, 150);
+        dueDate = LocalDate.now().minusDays(17);
+        returnedDate = LocalDate.now();
+    }
+
+    @Benchmark
+    public long calculateFine() {
+        return service.calculateFine(dueDate, returnedDate);
+    }
+}
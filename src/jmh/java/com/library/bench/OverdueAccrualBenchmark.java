@@ -0,0 +1,85 @@
+package com.library.bench;
+
+import com.library.model.BatchItemResult;
+import com.library.model.BorrowRequest;
+import com.library.model.ReturnRequest;
+import com.library.service.OverdueEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 夜间罚金计提的实际路径：{@link OverdueEngine#run} 按读者分段并行执行两条集合 UPDATE 并读出逾期清单。
+ * 生成的历史借阅都已归还，试验开始前先借出 bench.overdue 笔早已到期的借阅，结束时全部归还。
+ * 每次调用的计提日比上一次晚一天，每笔逾期借阅的罚金都有变化，与真实的夜间运行一样。
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OverdueAccrualBenchmark {
+    private static final int OVERDUE_DAYS = 60;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private final List<Long> overdueLoans = new ArrayList<>();
+    private OverdueEngine engine;
+    private LocalDate asOf;
+
+    @Setup(Level.Trial)
+    public void borrowOverdue(BenchmarkData data) throws SQLException {
+        int count = Integer.getInteger("bench.overdue", 10_000);
+        LocalDate dueDate = LocalDate.now().minusDays(OVERDUE_DAYS);
+        List<BorrowRequest> requests = new ArrayList<>(count);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            requests.add(new BorrowRequest(data.readerIds[random.nextInt(data.readerIds.length)],
+                    data.bookIds[random.nextInt(data.bookIds.length)], dueDate));
+        }
+        for (BatchItemResult result : data.service.borrowBooks(requests)) {
+            if (result.success()) {
+                overdueLoans.add(result.id());
+            }
+        }
+        engine = data.service.newOverdueEngine(parallelism);
+        asOf = dueDate;
+    }
+
+    // 归还时按实际逾期天数结清罚金，读者余额扣回计提的部分
+    @TearDown(Level.Trial)
+    public void returnOverdue(BenchmarkData data) throws SQLException {
+        engine.close();
+        LocalDate today = LocalDate.now();
+        data.service.returnBooks(overdueLoans.stream().map(loanId -> new ReturnRequest(loanId, today)).toList());
+        overdueLoans.clear();
+    }
+
+    @Benchmark
+    public int nightlyRun() throws SQLException {
+        asOf = asOf.plusDays(1);
+        OverdueEngine.Result result = engine.run(asOf, Duration.ofHours(1), loan -> {
+        });
+        return result.loansUpdated();
+    }
+}
@@ -0,0 +1,110 @@
+package com.library.bench;
+
+import com.library.model.BatchItemResult;
+import com.library.model.BorrowRequest;
+import com.library.model.BookDetail;
+import com.library.model.LoanDetail;
+import com.library.model.ReturnRequest;
+import com.library.repository.BorrowingDeniedException;
+import com.library.repository.OutOfStockException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RepositoryBenchmark {
+    private static final int RETURN_POOL_SIZE = 5_000;
+
+    @State(Scope.Thread)
+    public static class Circulation {
+        final List<Long> borrowed = new ArrayList<>();
+        final ArrayDeque<Long> returnable = new ArrayDeque<>();
+        final LocalDate dueDate = LocalDate.now().plusDays(30);
+
+        // 每轮预先借出一批，供 returnBook 使用
+        @Setup(Level.Iteration)
+        public void prepare(BenchmarkData data) throws SQLException {
+            List<BorrowRequest> requests = new ArrayList<>(RETURN_POOL_SIZE);
+            for (int i = 0; i < RETURN_POOL_SIZE; i++) {
+                requests.add(new BorrowRequest(pick(data.readerIds), pick(data.bookIds), dueDate));
+            }
+            for (BatchItemResult result : data.service.borrowBooks(requests)) {
+                if (result.success()) {
+                    returnable.add(result.id());
+                }
+            }
+        }
+
+        // 归还本轮 borrowBook 借出和未用完的借阅，保持在册数稳定
+        @TearDown(Level.Iteration)
+        public void restore(BenchmarkData data) throws SQLException {
+            List<ReturnRequest> requests = new ArrayList<>(borrowed.size() + returnable.size());
+            LocalDate today = LocalDate.now();
+            for (long loanId : borrowed) {
+                requests.add(new ReturnRequest(loanId, today));
+            }
+            for (long loanId : returnable) {
+                requests.add(new ReturnRequest(loanId, today));
+            }
+            data.service.returnBooks(requests);
+            borrowed.clear();
+            returnable.clear();
+        }
+    }
+
+    @Benchmark
+    public List<BookDetail> listBooks(BenchmarkData data) throws SQLException {
+        return data.service.listBooks();
+    }
+
+    @Benchmark
+    public List<LoanDetail> listLoanDetails(BenchmarkData data) throws SQLException {
+        return data.service.listLoanDetails();
+    }
+
+    @Benchmark
+    public long borrowBook(BenchmarkData data, Circulation circulation) throws SQLException {
+        try {
+            long loanId = data.service.borrowBook(pick(data.readerIds), pick(data.bookIds), circulation.dueDate).loan().id();
+            circulation.borrowed.add(loanId);
+            return loanId;
+        } catch (OutOfStockException | BorrowingDeniedException e) {
+            // 随机抽到的读者可能已达到在借上限
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public long returnBook(BenchmarkData data, Circulation circulation) throws SQLException {
+        Long loanId = circulation.returnable.poll();
+        if (loanId == null) {
+            loanId = data.service.borrowBook(pick(data.readerIds), pick(data.bookIds), circulation.dueDate).loan().id();
+        }
+        return data.service.returnBook(loanId, circulation.dueDate, LocalDate.now()).loan().finePaidCents();
+    }
+
+    private static long pick(long[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -1,11 +1,14 @@
 package com.library;
 
+import com.library.config.DatabaseManager;
 import com.library.ui.LibraryFrame;
 
 import javax.swing.SwingUtilities;
 
 public class App {
     public static void main(String[] args) {
+        // 在显示界面之前建立连接池并完成迁移，不占用事件分派线程
+        DatabaseManager.initialize();
         SwingUtilities.invokeLater(() -> new LibraryFrame().setVisible(true));
     }
 }
@@ -0,0 +1,254 @@
+package com.library.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 连接池和驱动配置。按以下顺序读取，后者覆盖前者：
+ * 类路径下的 database.properties、环境变量 DB_CONFIG 指向的外部文件、环境变量、JVM 系统属性。
+ * 环境变量名由属性名转为大写并把 . 和 - 换成 _，例如 db.pool.maximum-size 对应 DB_POOL_MAXIMUM_SIZE，
+ * 因此原有的 DB_URL、DB_USER、DB_PASSWORD 仍然有效。
+ */
+public record DatabaseConfig(
+        String url,
+        String user,
+        String password,
+        String poolName,
+        int maximumPoolSize,
+        int minimumIdle,
+        long connectionTimeoutMs,
+        long idleTimeoutMs,
+        long maxLifetimeMs,
+        long leakDetectionThresholdMs,
+        boolean cachePrepStmts,
+        int prepStmtCacheSize,
+        int prepStmtCacheSqlLimit,
+        boolean useServerPrepStmts,
+        boolean rewriteBatchedStatements,
+        boolean cacheResultSetMetadata,
+        boolean useLocalSessionState,
+        boolean elideSetAutoCommits,
+        boolean useCursorFetch,
+        int streamFetchSize,
+        String readUrl,
+        String readUser,
+        String readPassword,
+        int readMaximumPoolSize,
+        long readMaxLagMs,
+        long readStickyMs,
+        long readLagCheckMs,
+        boolean autoMigrate,
+        boolean eventOutbox,
+        long eventPollMs,
+        int reservationHoldDays,
+        int reservationMaxWaitDays,
+        long reservationSweepMs,
+        long policyRefreshMs,
+        boolean metricsEnabled,
+        boolean metricsJmx,
+        int metricsHttpPort,
+        String metricsDumpFile,
+        long slowQueryThresholdMs
+) {
+    private static final String RESOURCE = "database.properties";
+    private static final String CONFIG_ENV = "DB_CONFIG";
+
+    public static DatabaseConfig load() {
+        Properties properties = new Properties();
+        try (InputStream in = DatabaseConfig.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+            String external = System.getenv(CONFIG_ENV);
+            if (external != null && !external.isBlank()) {
+                try (Reader reader = Files.newBufferedReader(Path.of(external), StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("无法读取数据库配置文件", e);
+        }
+        return from(properties, System.getenv(), System.getProperties());
+    }
+
+    static DatabaseConfig from(Properties file, Map<String, String> env, Properties system) {
+        Settings s = new Settings(file, env, system);
+        String url = s.string("db.url", "jdbc:mysql://localhost:3306/library_db?useSSL=false&serverTimezone=UTC");
+        String user = s.string("db.user", "library_admin");
+        String password = s.string("db.password", "library_admin");
+        int maximumPoolSize = s.integer("db.pool.maximum-size", 10, 1);
+        String readUrl = s.string("db.read.url", "");
+        String dumpFile = s.string("db.metrics.dump-file", "");
+        return new DatabaseConfig(
+                url,
+                user,
+                password,
+                s.string("db.pool.name", "library-db-pool"),
+                maximumPoolSize,
+                s.integer("db.pool.minimum-idle", maximumPoolSize, 0),
+                s.duration("db.pool.connection-timeout-ms", 30_000, 250),
+                s.duration("db.pool.idle-timeout-ms", 600_000, 0),
+                s.duration("db.pool.max-lifetime-ms", 1_800_000, 0),
+                s.duration("db.pool.leak-detection-threshold-ms", 0, 0),
+                s.bool("db.driver.cache-prep-stmts", true),
+                s.integer("db.driver.prep-stmt-cache-size", 250, 0),
+                s.integer("db.driver.prep-stmt-cache-sql-limit", 2048, 0),
+                s.bool("db.driver.use-server-prep-stmts", true),
+                s.bool("db.driver.rewrite-batched-statements", true),
+                s.bool("db.driver.cache-result-set-metadata", true),
+                s.bool("db.driver.use-local-session-state", true),
+                s.bool("db.driver.elide-set-auto-commits", true),
+                s.bool("db.driver.use-cursor-fetch", true),
+                s.integer("db.stream.fetch-size", 1000, 1),
+                readUrl.isBlank() ? null : readUrl,
+                s.string("db.read.user", user),
+                s.string("db.read.password", password),
+                s.integer("db.read.pool.maximum-size", maximumPoolSize, 1),
+                s.duration("db.read.max-lag-ms", 5_000, 0),
+                s.duration("db.read.sticky-ms", 2_000, 0),
+                s.duration("db.read.lag-check-ms", 1_000, 100),
+                s.bool("db.schema.auto-migrate", true),
+                s.bool("db.events.outbox", false),
+                s.duration("db.events.poll-ms", 500, 50),
+                s.integer("db.reservation.hold-days", 3, 1),
+                s.integer("db.reservation.max-wait-days", 60, 1),
+                s.duration("db.reservation.sweep-ms", 60_000, 1_000),
+                s.duration("db.policy.refresh-ms", 30_000, 1_000),
+                s.bool("db.metrics.enabled", false),
+                s.bool("db.metrics.jmx", true),
+                s.integer("db.metrics.http-port", 0, 0),
+                dumpFile.isBlank() ? null : dumpFile,
+                s.duration("db.metrics.slow-query-ms", 500, 0)
+        );
+    }
+
+    public boolean hasReadReplica() {
+        return readUrl != null;
+    }
+
+    /** MySQL Connector/J 的数据源属性，读写两个连接池共用。 */
+    public Map<String, String> driverProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("cachePrepStmts", String.valueOf(cachePrepStmts));
+        properties.put("prepStmtCacheSize", String.valueOf(prepStmtCacheSize));
+        properties.put("prepStmtCacheSqlLimit", String.valueOf(prepStmtCacheSqlLimit));
+        properties.put("useServerPrepStmts", String.valueOf(useServerPrepStmts));
+        properties.put("rewriteBatchedStatements", String.valueOf(rewriteBatchedStatements));
+        properties.put("cacheResultSetMetadata", String.valueOf(cacheResultSetMetadata));
+        properties.put("useLocalSessionState", String.valueOf(useLocalSessionState));
+        properties.put("elideSetAutoCommits", String.valueOf(elideSetAutoCommits));
+        properties.put("useCursorFetch", String.valueOf(useCursorFetch));
+        return properties;
+    }
+
+    /** 生效配置的可读摘要，密码不输出。 */
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("url=" + url + ", user=" + user);
+        lines.add("pool " + poolName + ": maximumPoolSize=" + maximumPoolSize + ", minimumIdle=" + minimumIdle
+                + ", connectionTimeout=" + connectionTimeoutMs + "ms, idleTimeout=" + idleTimeoutMs
+                + "ms, maxLifetime=" + maxLifetimeMs + "ms, leakDetectionThreshold=" + leakDetectionThresholdMs + "ms");
+        lines.add("driver: " + driverProperties() + ", streamFetchSize=" + streamFetchSize);
+        if (hasReadReplica()) {
+            lines.add("read pool: url=" + readUrl + ", user=" + readUser + ", maximumPoolSize=" + readMaximumPoolSize
+                    + ", maxLag=" + readMaxLagMs + "ms, sticky=" + readStickyMs + "ms, lagCheck=" + readLagCheckMs + "ms");
+        } else {
+            lines.add("read pool: 未配置，只读查询使用主库连接池");
+        }
+        lines.add("schema: autoMigrate=" + autoMigrate);
+        lines.add("events: outbox=" + eventOutbox + (eventOutbox ? ", poll=" + eventPollMs + "ms" : ""));
+        lines.add("reservations: holdDays=" + reservationHoldDays + ", maxWaitDays=" + reservationMaxWaitDays
+                + ", sweep=" + reservationSweepMs + "ms");
+        lines.add("borrowing policy: refresh=" + policyRefreshMs + "ms");
+        if (metricsEnabled) {
+            lines.add("metrics: jmx=" + metricsJmx + ", httpPort=" + (metricsHttpPort == 0 ? "关闭" : metricsHttpPort)
+                    + ", dumpFile=" + (metricsDumpFile == null ? "无" : metricsDumpFile)
+                    + ", slowQuery=" + (slowQueryThresholdMs == 0 ? "关闭" : slowQueryThresholdMs + "ms"));
+        } else {
+            lines.add("metrics: 未开启");
+        }
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return String.join("; ", describe());
+    }
+
+    private static final class Settings {
+        private final Properties file;
+        private final Map<String, String> env;
+        private final Properties system;
+
+        private Settings(Properties file, Map<String, String> env, Properties system) {
+            this.file = file;
+            this.env = env;
+            this.system = system;
+        }
+
+        private String raw(String key) {
+            String value = system.getProperty(key);
+            if (value == null) {
+                value = env.get(key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_'));
+            }
+            if (value == null) {
+                value = file.getProperty(key);
+            }
+            return value == null ? null : value.trim();
+        }
+
+        String string(String key, String defaultValue) {
+            String value = raw(key);
+            return value == null ? defaultValue : value;
+        }
+
+        int integer(String key, int defaultValue, int min) {
+            return (int) number(key, defaultValue, min);
+        }
+
+        long duration(String key, long defaultValue, long min) {
+            return number(key, defaultValue, min);
+        }
+
+        boolean bool(String key, boolean defaultValue) {
+            String value = raw(key);
+            if (value == null || value.isEmpty()) {
+                return defaultValue;
+            }
+            if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+                return Boolean.parseBoolean(value);
+            }
+            throw new IllegalArgumentException("配置项 " + key + " 应为 true 或 false: " + value);
+        }
+
+        private long number(String key, long defaultValue, long min) {
+            String value = raw(key);
+            if (value == null || value.isEmpty()) {
+                return defaultValue;
+            }
+            long parsed;
+            try {
+                parsed = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("配置项 " + key + " 不是有效的数字: " + value, e);
+            }
+            if (parsed < min) {
+                throw new IllegalArgumentException("配置项 " + key + " 不能小于 " + min + ": " + value);
+            }
+            return parsed;
+        }
+    }
+}
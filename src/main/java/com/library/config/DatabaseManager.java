@@ -1,170 +1,155 @@
 package com.library.config;
 
+import com.library.metrics.MeteredDataSource;
+import com.library.metrics.MetricsRegistry;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
-import java.sql.Connection;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
 
+/**
+ * 连接池在第一次使用时才创建，并在创建时执行未完成的数据库迁移，类加载本身不访问数据库。
+ */
 public class DatabaseManager {
-    private static final String URL = System.getenv().getOrDefault("DB_URL", "jdbc:mysql://localhost:3306/library_db?useSSL=false&serverTimezone=UTC");
-    private static final String USER = System.getenv().getOrDefault("DB_USER", "library_admin");
-    private static final String PASSWORD = System.getenv().getOrDefault("DB_PASSWORD", "library_admin");
+    private static final Logger log = LoggerFactory.getLogger(DatabaseManager.class);
 
-    private static final DataSource dataSource = createDataSource();
+    private static final Duration METRICS_DUMP_INTERVAL = Duration.ofSeconds(15);
 
-    static {
-        initializeSchema();
+    private record Pools(DatabaseConfig config, DataSource write, DataSource read, MetricsRegistry metrics,
+                         ReplicaLagMonitor replicaLag) {
     }
 
+    private static volatile Pools pools;
+
     private DatabaseManager() {
     }
 
-    private static DataSource createDataSource() {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl(URL);
-        config.setUsername(USER);
-        config.setPassword(PASSWORD);
-        config.setMaximumPoolSize(10);
-        config.setPoolName("library-db-pool");
-        return new HikariDataSource(config);
+    /** 提前创建连接池并完成迁移，便于在界面显示之前暴露连接错误。 */
+    public static void initialize() {
+        pools();
+    }
+
+    public static DatabaseConfig getConfig() {
+        return pools().config();
     }
 
     public static DataSource getDataSource() {
-        return dataSource;
+        return pools().write();
+    }
+
+    public static DataSource getReadDataSource() {
+        return pools().read();
+    }
+
+    /** 未配置只读库时返回 null。 */
+    public static ReplicaLagMonitor getReplicaLagMonitor() {
+        return pools().replicaLag();
+    }
+
+    /** 未开启统计（db.metrics.enabled=false）时返回的实例只收集登记的 gauge，不记录仓库方法。 */
+    public static MetricsRegistry getMetrics() {
+        return pools().metrics();
+    }
+
+    private static Pools pools() {
+        Pools current = pools;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = pools;
+                if (current == null) {
+                    current = createPools(DatabaseConfig.load());
+                    pools = current;
+                }
+            }
+        }
+        return current;
     }
 
-    private static void initializeSchema() {
-        try (Connection connection = dataSource.getConnection();
-             Statement statement = connection.createStatement()) {
-
-            statement.execute("""
-                    CREATE TABLE IF NOT EXISTS categories (
-                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                        name VARCHAR(100) NOT NULL UNIQUE
-                    )
-                    """);
-
-            statement.execute("""
-                    CREATE TABLE IF NOT EXISTS publishers (
-                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                        name VARCHAR(150) NOT NULL UNIQUE
-                    )
-                    """);
-
-            statement.execute("""
-                    CREATE TABLE IF NOT EXISTS books (
-                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                        isbn VARCHAR(32) NOT NULL UNIQUE,
-                        title VARCHAR(200) NOT NULL,
-                        category_id BIGINT NOT NULL,
-                        publisher_id BIGINT NOT NULL,
-                        published_date DATE,
-                        total_copies INT NOT NULL,
-                        available_copies INT NOT NULL,
-                        CONSTRAINT fk_books_category FOREIGN KEY (category_id) REFERENCES categories(id),
-                        CONSTRAINT fk_books_publisher FOREIGN KEY (publisher_id) REFERENCES publishers(id)
-                    )
-                    """);
-
-            statement.execute("""
-                    CREATE TABLE IF NOT EXISTS readers (
-                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                        name VARCHAR(150) NOT NULL,
-                        card_number VARCHAR(50) NOT NULL UNIQUE,
-                        card_expiry DATE NOT NULL,
-                        outstanding_fine DECIMAL(10,2) NOT NULL DEFAULT 0
-                    )
-                    """);
-
-            statement.execute("""
-                    CREATE TABLE IF NOT EXISTS loans (
-                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                        book_id BIGINT NOT NULL,
-                        reader_id BIGINT NOT NULL,
-                        borrowed_date DATE NOT NULL,
-                        due_date DATE NOT NULL,
-                        returned_date DATE NULL,
-                        renewals INT NOT NULL DEFAULT 0,
-                        fine_paid DECIMAL(10,2) NOT NULL DEFAULT 0,
-                        CONSTRAINT fk_loans_book FOREIGN KEY (book_id) REFERENCES books(id),
-                        CONSTRAINT fk_loans_reader FOREIGN KEY (reader_id) REFERENCES readers(id)
-                    )
-                    """);
-
-            statement.execute("""
-                    CREATE TABLE IF NOT EXISTS payments (
-                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                        reader_id BIGINT NOT NULL,
-                        loan_id BIGINT NULL,
-                        amount DECIMAL(10,2) NOT NULL,
-                        paid_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-                        CONSTRAINT fk_payments_reader FOREIGN KEY (reader_id) REFERENCES readers(id),
-                        CONSTRAINT fk_payments_loan FOREIGN KEY (loan_id) REFERENCES loans(id)
-                    )
-                    """);
-
-            statement.execute("DROP TRIGGER IF EXISTS trg_loans_insert");
-            statement.execute("""
-                    CREATE TRIGGER trg_loans_insert
-                    AFTER INSERT ON loans
-                    FOR EACH ROW
-                    BEGIN
-                        UPDATE books SET available_copies = available_copies - 1 WHERE id = NEW.book_id;
-                    END
-                    """);
-
-            statement.execute("DROP TRIGGER IF EXISTS trg_loans_update");
-            statement.execute("""
-                    CREATE TRIGGER trg_loans_update
-                    AFTER UPDATE ON loans
-                    FOR EACH ROW
-                    BEGIN
-                        IF NEW.returned_date IS NOT NULL AND OLD.returned_date IS NULL THEN
-                            UPDATE books SET available_copies = available_copies + 1 WHERE id = NEW.book_id;
-                        END IF;
-                    END
-                    """);
-
-            statement.execute("""
-                    CREATE OR REPLACE VIEW view_book_stock AS
-                    SELECT b.isbn, b.title, b.total_copies AS total_count, b.available_copies AS available_count
-                    FROM books b
-                    """);
-
-            statement.execute("DROP PROCEDURE IF EXISTS get_reader_loans");
-            statement.execute("""
-                    CREATE PROCEDURE get_reader_loans(IN p_reader_id BIGINT)
-                    BEGIN
-                        SELECT l.id AS loan_id,
-                               b.title AS book_title,
-                               l.borrowed_date,
-                               l.due_date,
-                               l.returned_date,
-                               l.renewals,
-                               l.fine_paid
-                        FROM loans l
-                        JOIN books b ON b.id = l.book_id
-                        WHERE l.reader_id = p_reader_id
-                        ORDER BY l.borrowed_date DESC;
-                    END
-                    """);
-
-            statement.execute("INSERT IGNORE INTO categories(id, name) VALUES (1, '计算机'), (2, '文学')");
-            statement.execute("INSERT IGNORE INTO publishers(id, name) VALUES (1, '机械工业出版社'), (2, '清华大学出版社')");
-            statement.execute("""
-                    INSERT IGNORE INTO books(id, isbn, title, category_id, publisher_id, published_date, total_copies, available_copies)
-                    VALUES (1, '978-7-121-15535-2', 'Java 实战', 1, 1, '2020-01-01', 10, 10)
-                    """);
-            statement.execute("""
-                    INSERT IGNORE INTO readers(id, name, card_number, card_expiry)
-                    VALUES (1, '示例读者', 'CARD-001', DATE_ADD(CURDATE(), INTERVAL 1 YEAR))
-                    """);
-
-        } catch (SQLException e) {
+    private static Pools createPools(DatabaseConfig config) {
+        log.info("数据库连接配置:");
+        config.describe().forEach(line -> log.info("  {}", line));
+        HikariDataSource write = new HikariDataSource(poolConfig(config, config.poolName(), config.url(),
+                config.user(), config.password(), config.maximumPoolSize(), false));
+        try {
+            if (config.autoMigrate()) {
+                int applied = new SchemaMigrator(write).migrate();
+                if (applied > 0) {
+                    log.info("已执行 {} 个数据库迁移", applied);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            write.close();
             throw new RuntimeException("Failed to initialize database schema", e);
         }
+        // 未配置只读库时只读查询直接复用主库连接池
+        HikariDataSource read = write;
+        if (config.hasReadReplica()) {
+            read = new HikariDataSource(poolConfig(config, config.poolName() + "-read", config.readUrl(),
+                    config.readUser(), config.readPassword(), config.readMaximumPoolSize(), true));
+        }
+        MetricsRegistry metrics = new MetricsRegistry(config.metricsEnabled() && config.metricsJmx());
+        ReplicaLagMonitor replicaLag = null;
+        if (read != write) {
+            replicaLag = new ReplicaLagMonitor(read, Duration.ofMillis(config.readLagCheckMs()));
+            ReplicaLagMonitor monitor = replicaLag;
+            metrics.gauge("library_replica_lag_seconds", "只读库复制延迟，无法确定时为 -1", Map.of("pool", read.getPoolName()),
+                    () -> monitor.lagMillis() == ReplicaLagMonitor.UNKNOWN ? -1 : monitor.lagMillis() / 1000.0);
+        }
+        if (!config.metricsEnabled()) {
+            return new Pools(config, write, read, metrics, replicaLag);
+        }
+        DataSource meteredWrite = meter(write, metrics);
+        DataSource meteredRead = read == write ? meteredWrite : meter(read, metrics);
+        if (config.slowQueryThresholdMs() > 0) {
+            metrics.addQueryListener(MetricsRegistry.slowQueryLog(Duration.ofMillis(config.slowQueryThresholdMs())));
+        }
+        if (config.metricsDumpFile() != null) {
+            metrics.scheduleDump(Path.of(config.metricsDumpFile()), METRICS_DUMP_INTERVAL);
+        }
+        if (config.metricsHttpPort() > 0) {
+            try {
+                metrics.serve(config.metricsHttpPort());
+            } catch (IOException e) {
+                log.warn("无法在端口 {} 提供统计端点", config.metricsHttpPort(), e);
+            }
+        }
+        return new Pools(config, meteredWrite, meteredRead, metrics, replicaLag);
+    }
+
+    private static DataSource meter(HikariDataSource pool, MetricsRegistry metrics) {
+        Map<String, String> labels = Map.of("pool", pool.getPoolName());
+        HikariPoolMXBean stats = pool.getHikariPoolMXBean();
+        metrics.gauge("library_pool_connections_active", "已借出的连接数", labels, stats::getActiveConnections);
+        metrics.gauge("library_pool_connections_idle", "空闲连接数", labels, stats::getIdleConnections);
+        metrics.gauge("library_pool_connections_pending", "等待取连接的线程数", labels, stats::getThreadsAwaitingConnection);
+        metrics.gauge("library_pool_connections_max", "连接池上限", labels, pool::getMaximumPoolSize);
+        return new MeteredDataSource(pool, pool.getPoolName(), metrics);
+    }
+
+    private static HikariConfig poolConfig(DatabaseConfig config, String name, String url, String user, String password,
+                                           int maximumPoolSize, boolean readOnly) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(name);
+        hikari.setJdbcUrl(url);
+        hikari.setUsername(user);
+        hikari.setPassword(password);
+        hikari.setMaximumPoolSize(maximumPoolSize);
+        hikari.setMinimumIdle(Math.min(config.minimumIdle(), maximumPoolSize));
+        hikari.setConnectionTimeout(config.connectionTimeoutMs());
+        hikari.setIdleTimeout(config.idleTimeoutMs());
+        hikari.setMaxLifetime(config.maxLifetimeMs());
+        hikari.setLeakDetectionThreshold(config.leakDetectionThresholdMs());
+        hikari.setReadOnly(readOnly);
+        hikari.setRegisterMbeans(config.metricsEnabled() && config.metricsJmx());
+        config.driverProperties().forEach(hikari::addDataSourceProperty);
+        return hikari;
     }
 }
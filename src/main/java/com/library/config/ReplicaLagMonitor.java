@@ -0,0 +1,83 @@
+package com.library.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期在只读库上执行 SHOW REPLICA STATUS 读取复制延迟。只读库不是复制从库（例如同一实例的只读账户）时延迟为 0；
+ * 复制线程停止或读取失败时视为延迟无限大，只读查询回到主库，直到下一次检查恢复正常。
+ * 账户缺少 REPLICATION CLIENT 权限时无法判断延迟，记录一次告警后按 0 处理。
+ */
+public final class ReplicaLagMonitor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+    private static final int ER_SPECIFIC_ACCESS_DENIED = 1227;
+    static final long UNKNOWN = Long.MAX_VALUE;
+
+    private final DataSource replica;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "replica-lag-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lagMillis;
+    private volatile boolean privilegeWarned;
+
+    ReplicaLagMonitor(DataSource replica, Duration interval) {
+        this.replica = replica;
+        check();
+        scheduler.scheduleWithFixedDelay(this::check, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /** 最近一次检查到的延迟，毫秒；无法确定时为 Long.MAX_VALUE。 */
+    public long lagMillis() {
+        return lagMillis;
+    }
+
+    private void check() {
+        long previous = lagMillis;
+        lagMillis = measure();
+        if (lagMillis == UNKNOWN && previous != UNKNOWN) {
+            log.warn("只读库复制中断或无法连接，只读查询改走主库");
+        } else if (lagMillis != UNKNOWN && previous == UNKNOWN) {
+            log.info("只读库恢复，复制延迟 {} ms", lagMillis);
+        }
+    }
+
+    private long measure() {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SHOW REPLICA STATUS")) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                long seconds = rs.getLong("Seconds_Behind_Source");
+                return rs.wasNull() ? UNKNOWN : seconds * 1000;
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_SPECIFIC_ACCESS_DENIED) {
+                if (!privilegeWarned) {
+                    privilegeWarned = true;
+                    log.warn("只读账户没有 REPLICATION CLIENT 权限，无法读取复制延迟，按无延迟处理");
+                }
+                return 0;
+            }
+            log.debug("读取复制延迟失败", e);
+            return UNKNOWN;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,249 @@
+package com.library.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按版本号顺序执行 db/migration 下的迁移脚本，已执行的版本及脚本校验和记录在 schema_version 表中。
+ * 库已是最新版本时启动只需一次查询；已执行过的脚本被修改会被拒绝启动。
+ * 多个实例同时启动时用 GET_LOCK 串行化，只有一个实例执行迁移。
+ */
+public final class SchemaMigrator {
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    // 新增迁移脚本时追加到末尾，版本号必须递增
+    private static final List<String> SCRIPTS = List.of(
+            "V1__baseline.sql",
+            "V2__search_indexes.sql",
+            "V3__overdue_fines.sql",
+            "V4__event_outbox.sql",
+            "V5__reservations.sql",
+            "V6__book_copies.sql",
+            "V7__borrowing_policy.sql",
+            "V8__loan_fine_prepaid.sql"
+    );
+
+    private static final String LOCATION = "db/migration/";
+    private static final String LOCK_NAME = "library_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private static final int ER_NO_SUCH_TABLE = 1146;
+    // 列、索引、外键、CHECK 约束已存在：旧库补建或脚本失败后重跑时允许出现
+    private static final Set<Integer> ALREADY_EXISTS = Set.of(1060, 1061, 1826, 3822);
+
+    record Migration(int version, String description, String script, String checksum, String sql) {
+    }
+
+    private final DataSource dataSource;
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.migrations = loadMigrations();
+    }
+
+    /** 返回本次执行的迁移数量。 */
+    public int migrate() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (pending(connection).isEmpty()) {
+                return 0;
+            }
+            acquireLock(connection);
+            try {
+                createVersionTable(connection);
+                // 拿到锁之后重新检查，其他实例可能已经完成了迁移
+                List<Migration> pending = pending(connection);
+                for (Migration migration : pending) {
+                    apply(connection, migration);
+                }
+                return pending.size();
+            } finally {
+                releaseLock(connection);
+            }
+        }
+    }
+
+    private List<Migration> pending(Connection connection) throws SQLException {
+        Map<Integer, String> applied = appliedChecksums(connection);
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : migrations) {
+            String checksum = applied.get(migration.version());
+            if (checksum == null) {
+                pending.add(migration);
+            } else if (!checksum.equals(migration.checksum())) {
+                throw new SQLException("迁移脚本 " + migration.script() + " 在执行后被修改，校验和不一致");
+            }
+        }
+        return pending;
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getString(2));
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_NO_SUCH_TABLE) {
+                throw e;
+            }
+        }
+        return applied;
+    }
+
+    private static void createVersionTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                        version INT PRIMARY KEY,
+                        description VARCHAR(200) NOT NULL,
+                        script VARCHAR(200) NOT NULL,
+                        checksum CHAR(64) NOT NULL,
+                        execution_ms BIGINT NOT NULL,
+                        installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """);
+        }
+    }
+
+    // MySQL 的 DDL 会隐式提交，脚本无法整体回滚；失败时不记录版本，修复后重新执行，因此脚本需要可重复执行
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        log.info("执行数据库迁移 {}", migration.script());
+        long began = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : split(migration.sql())) {
+                try {
+                    statement.execute(sql);
+                } catch (SQLException e) {
+                    if (!ALREADY_EXISTS.contains(e.getErrorCode())) {
+                        throw new SQLException("迁移脚本 " + migration.script() + " 执行失败: " + e.getMessage(),
+                                e.getSQLState(), e.getErrorCode(), e);
+                    }
+                }
+            }
+        }
+        long elapsedMs = (System.nanoTime() - began) / 1_000_000;
+        String sql = "INSERT INTO schema_version (version, description, script, checksum, execution_ms) VALUES (?,?,?,?,?)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, migration.version());
+            statement.setString(2, migration.description());
+            statement.setString(3, migration.script());
+            statement.setString(4, migration.checksum());
+            statement.setLong(5, elapsedMs);
+            statement.executeUpdate();
+        }
+    }
+
+    private static void acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("等待数据库迁移锁超时");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        }
+    }
+
+    /** 按分号拆分语句，支持 mysql 客户端的 DELIMITER 指令；整行 -- 注释被忽略。 */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String delimiter = ";";
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (current.isEmpty() && (trimmed.isEmpty() || trimmed.startsWith("--"))) {
+                continue;
+            }
+            if (trimmed.regionMatches(true, 0, "DELIMITER ", 0, 10)) {
+                delimiter = trimmed.substring(10).trim();
+                continue;
+            }
+            if (trimmed.endsWith(delimiter)) {
+                current.append(line, 0, line.lastIndexOf(delimiter));
+                String sql = current.toString().trim();
+                if (!sql.isEmpty()) {
+                    statements.add(sql);
+                }
+                current.setLength(0);
+            } else {
+                current.append(line).append('\n');
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static List<Migration> loadMigrations() {
+        List<Migration> migrations = new ArrayList<>();
+        int previous = 0;
+        for (String script : SCRIPTS) {
+            Matcher matcher = SCRIPT_NAME.matcher(script);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("迁移脚本命名不符合 V<版本>__<描述>.sql: " + script);
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            if (version <= previous) {
+                throw new IllegalStateException("迁移脚本版本号必须递增: " + script);
+            }
+            previous = version;
+            String sql = read(script);
+            migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), script, sha256(sql), sql));
+        }
+        return migrations;
+    }
+
+    private static String read(String script) {
+        try (InputStream in = SchemaMigrator.class.getClassLoader().getResourceAsStream(LOCATION + script)) {
+            if (in == null) {
+                throw new IllegalStateException("找不到迁移脚本: " + LOCATION + script);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("无法读取迁移脚本: " + script, e);
+        }
+    }
+
+    // 统一换行符后再计算，避免 Windows 检出的 CRLF 导致校验和变化
+    private static String sha256(String sql) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.library.event;
+
+import java.time.LocalDate;
+
+/**
+ * 借还和目录变更的领域事件，在事务提交后发布到 {@link EventBus}；开启 outbox 时同时在同一事务内写入 event_outbox 表，
+ * 供其他终端按 id 增量读取。事件只携带键和变化的值，订阅方需要完整行时按主键读取。
+ */
+public sealed interface DomainEvent {
+    /** 新增或按 ISBN 更新了图书。 */
+    record BookAdded(String isbn) implements DomainEvent {
+    }
+
+    record LoanCreated(long loanId, long bookId, long readerId, LocalDate dueDate) implements DomainEvent {
+    }
+
+    record LoanRenewed(long loanId, long bookId, long readerId, LocalDate dueDate) implements DomainEvent {
+    }
+
+    record LoanReturned(long loanId, long bookId, long readerId, long fineCents) implements DomainEvent {
+    }
+
+    /** availableCopies 为事务提交时的在册数；事件可能晚于之后的修改到达，订阅方应回读而不是直接套用。 */
+    record StockChanged(long bookId, int availableCopies) implements DomainEvent {
+    }
+}
@@ -0,0 +1,122 @@
+package com.library.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 进程内事件总线：多个发布线程、一个分发线程，中间是容量为 2 的幂的环形缓冲区。
+ * 发布只做一次原子自增和两次写入，不加锁；缓冲区满时发布方短暂等待分发线程追上。
+ * 事件按发布顺序在分发线程上依次交给订阅者，订阅者应尽快返回（例如转交给 EDT）。
+ * 没有订阅者时发布直接丢弃，分发线程在第一次订阅时才启动。
+ */
+public final class EventBus implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(EventBus.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int mask;
+    private final AtomicReferenceArray<DomainEvent> slots;
+    // 槽位 i 中事件的序号加 1；等于期望序号加 1 时说明该槽位已写好
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final List<Consumer<? super DomainEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile long consumed;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    private Thread dispatcher;
+
+    public EventBus(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("容量必须是 2 的幂");
+        }
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.published = new AtomicLongArray(capacity);
+    }
+
+    public synchronized void subscribe(Consumer<? super DomainEvent> subscriber) {
+        subscribers.add(subscriber);
+        if (dispatcher == null && !closed) {
+            dispatcher = Thread.ofPlatform().daemon().name("event-bus").start(this::dispatch);
+        }
+    }
+
+    public void unsubscribe(Consumer<? super DomainEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public void publish(DomainEvent event) {
+        if (subscribers.isEmpty() || closed) {
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed > mask) {
+            if (closed) {
+                return;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        int index = (int) (sequence & mask);
+        slots.set(index, event);
+        published.set(index, sequence + 1);
+        if (sleeping) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    public void publishAll(List<? extends DomainEvent> events) {
+        events.forEach(this::publish);
+    }
+
+    /** 已发布但尚未分发的事件数。 */
+    public long backlog() {
+        return Math.max(0, claimed.get() - consumed);
+    }
+
+    private void dispatch() {
+        long next = consumed;
+        while (!closed) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next + 1) {
+                sleeping = true;
+                // 设置标志后再检查一次，避免发布方在检查之前写入而错过唤醒
+                if (published.get(index) != next + 1 && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            DomainEvent event = slots.getAndSet(index, null);
+            consumed = ++next;
+            for (Consumer<? super DomainEvent> subscriber : subscribers) {
+                try {
+                    subscriber.accept(event);
+                } catch (RuntimeException e) {
+                    log.warn("事件订阅者处理 {} 失败", event, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = dispatcher;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
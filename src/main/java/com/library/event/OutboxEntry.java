@@ -0,0 +1,5 @@
+package com.library.event;
+
+/** event_outbox 中的一行；origin 标识写入该事件的仓库实例。 */
+public record OutboxEntry(long id, String origin, DomainEvent event) {
+}
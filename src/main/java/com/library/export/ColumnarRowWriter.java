@@ -0,0 +1,99 @@
+package com.library.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑的列式二进制格式，每 ROW_GROUP_SIZE 行为一个行组，行组内逐列连续存放，读取方可以按长度跳过不需要的列。
+ * <pre>
+ * 文件头  "LCOL" 版本(byte) 列数(short) {列名(UTF) 类型(byte, ExportColumn.Type 序号)}...
+ * 行组    行数(int) {该列字节数(int) 该列各行的值}...
+ * 文件尾  0(int) 总行数(long)
+ * </pre>
+ * LONG、MONEY 为 8 字节，INT 为 4 字节；DATE 为 epochDay 的 int，空值为 Integer.MIN_VALUE；
+ * STRING 为 UTF-8 字节数(int) 加内容，空值的字节数为 -1。数值均为大端序。
+ */
+final class ColumnarRowWriter<T> implements RowWriter<T> {
+    static final byte[] MAGIC = {'L', 'C', 'O', 'L'};
+    static final int VERSION = 1;
+    private static final int ROW_GROUP_SIZE = 8192;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private final List<ExportColumn<T>> columns;
+    private final DataOutputStream out;
+    private final List<T> group = new ArrayList<>(ROW_GROUP_SIZE);
+    private final ByteArrayOutputStream columnBytes = new ByteArrayOutputStream(64 * 1024);
+    private final DataOutputStream column = new DataOutputStream(columnBytes);
+    private long rows;
+
+    ColumnarRowWriter(ExportTable<T> table, OutputStream stream) throws IOException {
+        this.columns = table.columns();
+        this.out = new DataOutputStream(stream);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(columns.size());
+        for (ExportColumn<T> c : columns) {
+            out.writeUTF(c.name());
+            out.writeByte(c.type().ordinal());
+        }
+    }
+
+    @Override
+    public void write(T row) throws IOException {
+        group.add(row);
+        if (group.size() == ROW_GROUP_SIZE) {
+            flushGroup();
+        }
+    }
+
+    private void flushGroup() throws IOException {
+        if (group.isEmpty()) {
+            return;
+        }
+        out.writeInt(group.size());
+        for (ExportColumn<T> c : columns) {
+            columnBytes.reset();
+            for (T row : group) {
+                encode(c, c.value().apply(row));
+            }
+            out.writeInt(columnBytes.size());
+            columnBytes.writeTo(out);
+        }
+        rows += group.size();
+        group.clear();
+    }
+
+    private void encode(ExportColumn<T> c, Object value) throws IOException {
+        switch (c.type()) {
+            case LONG, MONEY -> column.writeLong((Long) value);
+            case INT -> column.writeInt((Integer) value);
+            case DATE -> column.writeInt(value == null ? NULL_DATE : (int) ((LocalDate) value).toEpochDay());
+            case STRING -> {
+                if (value == null) {
+                    column.writeInt(-1);
+                } else {
+                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    column.writeInt(bytes.length);
+                    column.write(bytes);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushGroup();
+            out.writeInt(0);
+            out.writeLong(rows);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.library.export;
+
+import com.library.model.Money;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 带表头的 UTF-8 CSV，含逗号、引号或换行的字段用双引号包裹（"" 转义），与 {@code CsvCatalogReader} 的规则一致。
+ * 空值写为空字段，金额写为元。
+ */
+final class CsvRowWriter<T> implements RowWriter<T> {
+    private final List<ExportColumn<T>> columns;
+    private final BufferedWriter out;
+
+    CsvRowWriter(ExportTable<T> table, OutputStream stream) throws IOException {
+        this.columns = table.columns();
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(columns.get(i).name());
+        }
+        out.write('\n');
+    }
+
+    @Override
+    public void write(T row) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            ExportColumn<T> column = columns.get(i);
+            Object value = column.value().apply(row);
+            if (value == null) {
+                continue;
+            }
+            switch (column.type()) {
+                case MONEY -> out.write(Money.format((Long) value));
+                case STRING -> writeText((String) value);
+                default -> out.write(value.toString());
+            }
+        }
+        out.write('\n');
+    }
+
+    private void writeText(String text) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(text);
+            return;
+        }
+        out.write('"');
+        out.write(text.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
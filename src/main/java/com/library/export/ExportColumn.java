@@ -0,0 +1,33 @@
+package com.library.export;
+
+import java.time.LocalDate;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/** 导出文件中的一列。MONEY 列的值是以分为单位的 long。 */
+public record ExportColumn<T>(String name, Type type, Function<? super T, ?> value) {
+    public enum Type {
+        LONG, INT, MONEY, DATE, STRING
+    }
+
+    public static <T> ExportColumn<T> ofLong(String name, ToLongFunction<? super T> value) {
+        return new ExportColumn<>(name, Type.LONG, row -> value.applyAsLong(row));
+    }
+
+    public static <T> ExportColumn<T> ofInt(String name, ToIntFunction<? super T> value) {
+        return new ExportColumn<>(name, Type.INT, row -> value.applyAsInt(row));
+    }
+
+    public static <T> ExportColumn<T> ofMoney(String name, ToLongFunction<? super T> cents) {
+        return new ExportColumn<>(name, Type.MONEY, row -> cents.applyAsLong(row));
+    }
+
+    public static <T> ExportColumn<T> ofDate(String name, Function<? super T, LocalDate> value) {
+        return new ExportColumn<>(name, Type.DATE, value);
+    }
+
+    public static <T> ExportColumn<T> ofString(String name, Function<? super T, String> value) {
+        return new ExportColumn<>(name, Type.STRING, value);
+    }
+}
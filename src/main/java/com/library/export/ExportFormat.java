@@ -0,0 +1,31 @@
+package com.library.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public enum ExportFormat {
+    CSV(".csv"),
+    COLUMNAR(".lcol");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public static ExportFormat of(String name) {
+        return switch (name.toLowerCase()) {
+            case "csv" -> CSV;
+            case "columnar", "lcol" -> COLUMNAR;
+            default -> throw new IllegalArgumentException("不支持的导出格式: " + name);
+        };
+    }
+
+    <T> RowWriter<T> open(ExportTable<T> table, OutputStream stream) throws IOException {
+        return this == CSV ? new CsvRowWriter<>(table, stream) : new ColumnarRowWriter<>(table, stream);
+    }
+}
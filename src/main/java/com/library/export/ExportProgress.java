@@ -0,0 +1,5 @@
+package com.library.export;
+
+/** bytesWritten 是写入磁盘的字节数，开启 gzip 时为压缩后的大小。 */
+public record ExportProgress(long rows, long bytesWritten, int files, double rowsPerSecond) {
+}
@@ -0,0 +1,41 @@
+package com.library.export;
+
+import com.library.model.BookDetail;
+import com.library.model.LoanDetail;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 可导出的表：列定义和按月分区所用的日期。partitionDate 为 null 的表不支持分区。
+ */
+public record ExportTable<T>(String name, List<ExportColumn<T>> columns, Function<? super T, LocalDate> partitionDate) {
+    public static final ExportTable<LoanDetail> LOANS = new ExportTable<>("loans", List.of(
+            ExportColumn.ofLong("id", LoanDetail::id),
+            ExportColumn.ofLong("book_id", LoanDetail::bookId),
+            ExportColumn.ofString("book_title", LoanDetail::bookTitle),
+            ExportColumn.ofLong("reader_id", LoanDetail::readerId),
+            ExportColumn.ofString("reader_name", LoanDetail::readerName),
+            ExportColumn.ofDate("borrowed_date", LoanDetail::borrowedDate),
+            ExportColumn.ofDate("due_date", LoanDetail::dueDate),
+            ExportColumn.ofDate("returned_date", LoanDetail::returnedDate),
+            ExportColumn.ofInt("renewals", LoanDetail::renewals),
+            ExportColumn.ofMoney("fine_paid", LoanDetail::finePaidCents)
+    ), LoanDetail::borrowedDate);
+
+    public static final ExportTable<BookDetail> BOOKS = new ExportTable<>("books", List.of(
+            ExportColumn.ofLong("id", BookDetail::id),
+            ExportColumn.ofString("isbn", BookDetail::isbn),
+            ExportColumn.ofString("title", BookDetail::title),
+            ExportColumn.ofString("category", BookDetail::categoryName),
+            ExportColumn.ofString("publisher", BookDetail::publisherName),
+            ExportColumn.ofDate("published_date", BookDetail::publishedDate),
+            ExportColumn.ofInt("total_copies", BookDetail::totalCopies),
+            ExportColumn.ofInt("available_copies", BookDetail::availableCopies)
+    ), null);
+
+    public boolean partitionable() {
+        return partitionDate != null;
+    }
+}
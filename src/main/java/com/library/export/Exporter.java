@@ -0,0 +1,207 @@
+package com.library.export;
+
+import com.library.repository.LibraryRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流式导出借阅记录和图书目录：查询以只进游标逐批读取，每行直接编码写入文件，内存占用与数据量无关。
+ * 借阅可按借出月份分为多个文件（结果按借出日排序，月份变化时切换文件）。
+ * 每个文件先写入 .part，写完后再改名，中途失败不会留下看似完整的文件。
+ */
+public class Exporter {
+    private static final int PROGRESS_INTERVAL = 100_000;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    private interface Source<T> {
+        int forEach(Consumer<T> consumer) throws SQLException;
+    }
+
+    private final LibraryRepository repository;
+    private final ExportFormat format;
+    private final boolean gzip;
+
+    public Exporter(LibraryRepository repository, ExportFormat format, boolean gzip) {
+        this.repository = repository;
+        this.format = format;
+        this.gzip = gzip;
+    }
+
+    /** 导出借出日在 [from, to) 内的借阅，from、to 为 null 表示不限。 */
+    public ExportProgress exportLoans(Path directory, LocalDate from, LocalDate to, boolean monthly,
+                                      Consumer<ExportProgress> listener) throws IOException, SQLException {
+        return export(ExportTable.LOANS, consumer -> repository.forEachLoan(from, to, consumer),
+                directory, monthly, listener);
+    }
+
+    public ExportProgress exportBooks(Path directory, Consumer<ExportProgress> listener) throws IOException, SQLException {
+        return export(ExportTable.BOOKS, repository::forEachBook, directory, false, listener);
+    }
+
+    private <T> ExportProgress export(ExportTable<T> table, Source<T> source, Path directory, boolean monthly,
+                                      Consumer<ExportProgress> listener) throws IOException, SQLException {
+        if (monthly && !table.partitionable()) {
+            throw new IllegalArgumentException(table.name() + " 不支持按月分区");
+        }
+        Files.createDirectories(directory);
+        long started = System.nanoTime();
+        Partitions<T> files = new Partitions<>(table, directory, monthly);
+        boolean done = false;
+        try {
+            source.forEach(row -> {
+                try {
+                    files.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (files.rows % PROGRESS_INTERVAL == 0) {
+                    listener.accept(progress(files, started));
+                }
+            });
+            files.finish();
+            done = true;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (!done) {
+                files.abort();
+            }
+        }
+        ExportProgress result = progress(files, started);
+        listener.accept(result);
+        return result;
+    }
+
+    private static ExportProgress progress(Partitions<?> files, long startedNanos) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startedNanos) / 1_000_000_000.0);
+        return new ExportProgress(files.rows, files.bytesWritten(), files.completed.size(), files.rows / seconds);
+    }
+
+    // 当前正在写的分区文件及已完成的文件
+    private final class Partitions<T> {
+        private final ExportTable<T> table;
+        private final Path directory;
+        private final boolean monthly;
+        private final List<Path> completed = new ArrayList<>();
+        private YearMonth month;
+        private Path part;
+        private ChannelOutputStream channel;
+        private RowWriter<T> writer;
+        private long completedBytes;
+        private long rows;
+
+        Partitions(ExportTable<T> table, Path directory, boolean monthly) {
+            this.table = table;
+            this.directory = directory;
+            this.monthly = monthly;
+        }
+
+        void write(T row) throws IOException {
+            YearMonth rowMonth = monthly ? YearMonth.from(table.partitionDate().apply(row)) : null;
+            if (writer == null || !Objects.equals(rowMonth, month)) {
+                close();
+                open(rowMonth);
+            }
+            writer.write(row);
+            rows++;
+        }
+
+        // 没有任何行时不分区导出仍写出只有表头的文件
+        void finish() throws IOException {
+            if (writer == null && !monthly) {
+                open(null);
+            }
+            close();
+        }
+
+        long bytesWritten() {
+            return completedBytes + (channel == null ? 0 : channel.written());
+        }
+
+        private void open(YearMonth month) throws IOException {
+            this.month = month;
+            part = directory.resolve(fileName() + ".part");
+            channel = new ChannelOutputStream(part);
+            OutputStream stream = gzip ? new GZIPOutputStream(channel, GZIP_BUFFER_SIZE) : channel;
+            writer = format.open(table, stream);
+        }
+
+        private void close() throws IOException {
+            if (writer == null) {
+                return;
+            }
+            writer.close();
+            completedBytes += channel.written();
+            Path target = directory.resolve(fileName());
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            completed.add(target);
+            writer = null;
+            channel = null;
+        }
+
+        private void abort() {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // 失败的分区文件随后删除
+            }
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+                // 留下的 .part 文件不影响下次导出
+            }
+            writer = null;
+        }
+
+        private String fileName() {
+            return table.name() + (month == null ? "" : "-" + month) + format.extension() + (gzip ? ".gz" : "");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        boolean gzip = false;
+        boolean monthly = false;
+        for (String arg : args) {
+            switch (arg) {
+                case "--gzip" -> gzip = true;
+                case "--monthly" -> monthly = true;
+                default -> positional.add(arg);
+            }
+        }
+        if (positional.size() < 2 || !List.of("loans", "books").contains(positional.get(0))) {
+            System.err.println("用法: Exporter <loans|books> <输出目录> [csv|columnar] [起始日期] [截止日期] [--gzip] [--monthly]");
+            System.exit(1);
+        }
+        Path directory = Paths.get(positional.get(1));
+        ExportFormat format = ExportFormat.of(positional.size() > 2 ? positional.get(2) : "csv");
+        LocalDate from = positional.size() > 3 ? LocalDate.parse(positional.get(3)) : null;
+        LocalDate to = positional.size() > 4 ? LocalDate.parse(positional.get(4)) : null;
+
+        Exporter exporter = new Exporter(new LibraryRepository(), format, gzip);
+        Consumer<ExportProgress> listener = progress -> System.out.printf("已导出 %d 行，%.1f MB，%.0f 行/秒%n",
+                progress.rows(), progress.bytesWritten() / 1048576.0, progress.rowsPerSecond());
+        ExportProgress result = positional.get(0).equals("loans")
+                ? exporter.exportLoans(directory, from, to, monthly, listener)
+                : exporter.exportBooks(directory, listener);
+        System.out.printf("导出完成：共 %d 行，%d 个文件%n", result.rows(), result.files());
+    }
+}
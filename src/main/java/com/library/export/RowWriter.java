@@ -0,0 +1,8 @@
+package com.library.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+interface RowWriter<T> extends Closeable {
+    void write(T row) throws IOException;
+}
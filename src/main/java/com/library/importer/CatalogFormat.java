@@ -0,0 +1,20 @@
+package com.library.importer;
+
+import java.io.BufferedReader;
+
+public enum CatalogFormat {
+    CSV,
+    MARC_LITE;
+
+    public static CatalogFormat of(String name) {
+        return switch (name.toLowerCase()) {
+            case "csv" -> CSV;
+            case "marc", "marc-lite" -> MARC_LITE;
+            default -> throw new IllegalArgumentException("不支持的目录格式: " + name);
+        };
+    }
+
+    CatalogRecordReader open(BufferedReader reader) {
+        return this == CSV ? new CsvCatalogReader(reader) : new MarcLiteCatalogReader(reader);
+    }
+}
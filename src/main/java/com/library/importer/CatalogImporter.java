@@ -0,0 +1,227 @@
+package com.library.importer;
+
+import com.library.model.Book;
+import com.library.model.Category;
+import com.library.model.Publisher;
+import com.library.repository.LibraryRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 流式导入图书目录：单线程逐条解析文件并把分类、出版社名称解析为 ID，
+ * 按块交给若干工作线程做多行 upsert。队列有界，数据库跟不上时解析会等待，内存占用与文件大小无关。
+ * 每完成一段连续的块就把已处理的记录数写入检查点文件，中断后再次导入会从检查点继续。
+ */
+public class CatalogImporter {
+    private static final Chunk POISON = new Chunk(-1, -1, List.of());
+
+    private final LibraryRepository repository;
+    private final int workers;
+    private final int chunkSize;
+    private final Map<String, Long> categories = new HashMap<>();
+    private final Map<String, Long> publishers = new HashMap<>();
+
+    public CatalogImporter(LibraryRepository repository, int workers, int chunkSize) {
+        if (workers <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("工作线程数和分块大小必须大于 0");
+        }
+        this.repository = repository;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportProgress importFile(Path file, CatalogFormat format, Path checkpointFile,
+                                     Consumer<ImportProgress> listener) throws IOException, SQLException, InterruptedException {
+        loadDictionaries();
+        Checkpoint checkpoint = new Checkpoint(checkpointFile);
+        long resumeFrom = checkpoint.position();
+
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(workers * 2);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        LongAdder imported = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofVirtual().name("catalog-import-" + i).start(() -> work(queue, checkpoint, imported, failure)));
+        }
+
+        long started = System.nanoTime();
+        long position = 0;
+        long rejected = 0;
+        long sequence = 0;
+        try (CatalogRecordReader reader = format.open(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            List<Book> books = new ArrayList<>(chunkSize);
+            while (failure.get() == null) {
+                CatalogRecord record;
+                try {
+                    record = reader.next();
+                } catch (IllegalArgumentException | DateTimeException e) {
+                    if (++position > resumeFrom) {
+                        rejected++;
+                    }
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                if (++position <= resumeFrom) {
+                    continue;
+                }
+                books.add(toBook(record));
+                if (books.size() == chunkSize) {
+                    queue.put(new Chunk(sequence++, position, books));
+                    books = new ArrayList<>(chunkSize);
+                    listener.accept(progress(position, imported.sum(), rejected, started));
+                }
+            }
+            if (!books.isEmpty() && failure.get() == null) {
+                queue.put(new Chunk(sequence, position, books));
+            }
+        } finally {
+            for (int i = 0; i < threads.size(); i++) {
+                queue.put(POISON);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        Exception error = failure.get();
+        if (error instanceof SQLException e) {
+            throw e;
+        }
+        if (error instanceof IOException e) {
+            throw e;
+        }
+        checkpoint.delete();
+        ImportProgress result = progress(position, imported.sum(), rejected, started);
+        listener.accept(result);
+        return result;
+    }
+
+    private void work(BlockingQueue<Chunk> queue, Checkpoint checkpoint, LongAdder imported, AtomicReference<Exception> failure) {
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == POISON) {
+                    return;
+                }
+                // 出错后继续取走队列中的块，让解析线程尽快结束
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    repository.upsertBooks(chunk.books());
+                    imported.add(chunk.books().size());
+                    checkpoint.completed(chunk.sequence(), chunk.endPosition());
+                } catch (SQLException | IOException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loadDictionaries() throws SQLException {
+        for (Category category : repository.listCategories()) {
+            categories.put(category.name(), category.id());
+        }
+        for (Publisher publisher : repository.listPublishers()) {
+            publishers.put(publisher.name(), publisher.id());
+        }
+    }
+
+    private Book toBook(CatalogRecord record) throws SQLException {
+        Long categoryId = categories.get(record.category());
+        if (categoryId == null) {
+            categoryId = repository.upsertCategory(record.category());
+            categories.put(record.category(), categoryId);
+        }
+        Long publisherId = publishers.get(record.publisher());
+        if (publisherId == null) {
+            publisherId = repository.upsertPublisher(record.publisher());
+            publishers.put(record.publisher(), publisherId);
+        }
+        return new Book(0, record.isbn(), record.title(), categoryId, publisherId, record.publishedDate(),
+                record.totalCopies(), record.totalCopies());
+    }
+
+    private static ImportProgress progress(long read, long imported, long rejected, long startedNanos) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startedNanos) / 1_000_000_000.0);
+        return new ImportProgress(read, imported, rejected, imported / seconds);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("用法: CatalogImporter <文件> [csv|marc] [工作线程数]");
+            System.exit(1);
+        }
+        Path file = Paths.get(args[0]);
+        CatalogFormat format = CatalogFormat.of(args.length > 1 ? args[1] : "csv");
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        Path checkpoint = file.resolveSibling(file.getFileName() + ".checkpoint");
+
+        CatalogImporter importer = new CatalogImporter(new LibraryRepository(), workers, 1000);
+        ImportProgress result = importer.importFile(file, format, checkpoint, progress -> System.out.printf(
+                "已读取 %d 条，已导入 %d 条，跳过 %d 条，%.0f 条/秒%n",
+                progress.recordsRead(), progress.recordsImported(), progress.rejected(), progress.recordsPerSecond()));
+        System.out.printf("导入完成：共导入 %d 条，跳过 %d 条%n", result.recordsImported(), result.rejected());
+    }
+
+    private record Chunk(long sequence, long endPosition, List<Book> books) {
+    }
+
+    private static final class Checkpoint {
+        private final Path file;
+        private final TreeMap<Long, Long> finished = new TreeMap<>();
+        private long nextSequence;
+        private long position;
+
+        Checkpoint(Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file)) {
+                position = Long.parseLong(Files.readString(file).trim());
+            }
+        }
+
+        synchronized long position() {
+            return position;
+        }
+
+        // 块可能乱序完成，只有前面的块全部完成后检查点才向前推进
+        synchronized void completed(long sequence, long endPosition) throws IOException {
+            finished.put(sequence, endPosition);
+            boolean advanced = false;
+            while (finished.containsKey(nextSequence)) {
+                position = finished.remove(nextSequence++);
+                advanced = true;
+            }
+            if (advanced) {
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.writeString(temp, Long.toString(position));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        synchronized void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+}
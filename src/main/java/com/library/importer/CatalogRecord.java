@@ -0,0 +1,13 @@
+package com.library.importer;
+
+import java.time.LocalDate;
+
+public record CatalogRecord(
+        String isbn,
+        String title,
+        String category,
+        String publisher,
+        LocalDate publishedDate,
+        int totalCopies
+) {
+}
@@ -0,0 +1,39 @@
+package com.library.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * 逐条读取目录记录，返回 null 表示读完。格式错误的记录抛出 {@link IllegalArgumentException}，
+ * 调用方可以跳过该条继续读取。
+ */
+interface CatalogRecordReader extends Closeable {
+    CatalogRecord next() throws IOException;
+
+    static LocalDate parseDate(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.length() == 4 ? LocalDate.of(Integer.parseInt(trimmed), 1, 1) : LocalDate.parse(trimmed);
+    }
+
+    static int parseCopies(String value) {
+        if (value == null || value.isBlank()) {
+            return 1;
+        }
+        int copies = Integer.parseInt(value.trim());
+        if (copies < 0) {
+            throw new IllegalArgumentException("册数不能为负数");
+        }
+        return copies;
+    }
+
+    static String require(String value, String label) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException(label + "不能为空");
+        }
+        return value.trim();
+    }
+}
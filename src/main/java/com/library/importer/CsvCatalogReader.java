@@ -0,0 +1,95 @@
+package com.library.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带表头的 CSV：isbn,title,category,publisher,published_date,total_copies。
+ * 支持双引号包裹的字段（含逗号、换行和 "" 转义）。
+ */
+class CsvCatalogReader implements CatalogRecordReader {
+    private final BufferedReader reader;
+    private boolean headerSkipped;
+
+    CsvCatalogReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public CatalogRecord next() throws IOException {
+        if (!headerSkipped) {
+            headerSkipped = true;
+            if (readRow() == null) {
+                return null;
+            }
+        }
+        List<String> row;
+        do {
+            row = readRow();
+            if (row == null) {
+                return null;
+            }
+        } while (row.size() == 1 && row.get(0).isBlank());
+
+        if (row.size() < 4) {
+            throw new IllegalArgumentException("字段数不足: " + String.join(",", row));
+        }
+        return new CatalogRecord(
+                CatalogRecordReader.require(row.get(0), "ISBN"),
+                CatalogRecordReader.require(row.get(1), "书名"),
+                CatalogRecordReader.require(row.get(2), "分类"),
+                CatalogRecordReader.require(row.get(3), "出版社"),
+                CatalogRecordReader.parseDate(row.size() > 4 ? row.get(4) : null),
+                CatalogRecordReader.parseCopies(row.size() > 5 ? row.get(5) : null)
+        );
+    }
+
+    private List<String> readRow() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (!quoted) {
+                break;
+            }
+            line = reader.readLine();
+            if (line == null) {
+                throw new IllegalArgumentException("引号未闭合");
+            }
+            field.append('\n');
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,4 @@
+package com.library.importer;
+
+public record ImportProgress(long recordsRead, long recordsImported, long rejected, double recordsPerSecond) {
+}
@@ -0,0 +1,67 @@
+package com.library.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * 简化的 MARC 文本格式：每行 "字段号 值"，记录之间用空行分隔。
+ * 020 ISBN，245 书名，650 分类，260 出版社，264 出版日期（yyyy 或 yyyy-MM-dd），952 馆藏册数。
+ * 其他字段号忽略。
+ */
+class MarcLiteCatalogReader implements CatalogRecordReader {
+    private final BufferedReader reader;
+
+    MarcLiteCatalogReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public CatalogRecord next() throws IOException {
+        String isbn = null;
+        String title = null;
+        String category = null;
+        String publisher = null;
+        String published = null;
+        String copies = null;
+        boolean empty = true;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                if (empty) {
+                    continue;
+                }
+                break;
+            }
+            empty = false;
+            String tag = line.length() >= 3 ? line.substring(0, 3) : line;
+            String value = line.length() > 3 ? line.substring(3).trim() : "";
+            switch (tag) {
+                case "020" -> isbn = value;
+                case "245" -> title = value;
+                case "650" -> category = value;
+                case "260" -> publisher = value;
+                case "264" -> published = value;
+                case "952" -> copies = value;
+                default -> {
+                }
+            }
+        }
+        if (empty) {
+            return null;
+        }
+        return new CatalogRecord(
+                CatalogRecordReader.require(isbn, "ISBN"),
+                CatalogRecordReader.require(title, "书名"),
+                CatalogRecordReader.require(category, "分类"),
+                CatalogRecordReader.require(publisher, "出版社"),
+                CatalogRecordReader.parseDate(published),
+                CatalogRecordReader.parseCopies(copies)
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
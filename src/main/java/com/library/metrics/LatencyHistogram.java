@@ -0,0 +1,90 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数分桶的延迟直方图，可被多个线程并发记录。每个 2 的幂区间再分成 32 个子桶，
+ * 相对误差约 3%，覆盖 1 微秒到半小时，超出范围的样本计入最后一个桶。
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 27;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(MAGNITUDES * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        buckets.incrementAndGet(index(Math.max(1, nanos / 1000)));
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public void recordError() {
+        errors.increment();
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double meanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000.0;
+    }
+
+    public double maxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /** 返回分位数对应桶的上界，单位毫秒。 */
+    public double percentileMillis(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(upperBoundMicros(i) / 1000.0, maxMillis());
+            }
+        }
+        return maxMillis();
+    }
+
+    private static int index(long micros) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude < SUB_BUCKET_BITS) {
+            return (int) micros;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+        int index = (shift + 1) * SUB_BUCKETS + sub;
+        return Math.min(index, MAGNITUDES * SUB_BUCKETS - 1);
+    }
+
+    private static long upperBoundMicros(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+}
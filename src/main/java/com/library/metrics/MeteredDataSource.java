@@ -0,0 +1,281 @@
+package com.library.metrics;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * 包装连接池，为每次借出的连接记录取连接的等待时间，并把借出期间的耗时、行数、语句数和失败
+ * 计入调用栈上最外层的 com.library.repository 方法，因此仓库代码不需要任何改动。
+ * 每条语句执行后把 SQL、参数和耗时交给 {@link QueryListener}（如慢查询日志）。
+ */
+public final class MeteredDataSource implements DataSource {
+    private static final String REPOSITORY_PACKAGE = "com.library.repository";
+    private static final String OTHER = "other";
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+            "executeBatch", "executeLargeBatch");
+
+    private final DataSource delegate;
+    private final MetricsRegistry registry;
+    private final LatencyHistogram acquire;
+
+    public MeteredDataSource(DataSource delegate, String poolName, MetricsRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.acquire = registry.connectionAcquire(poolName);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        String operation = operationName();
+        long began = System.nanoTime();
+        Connection connection;
+        try {
+            connection = delegate.getConnection();
+        } catch (SQLException e) {
+            acquire.recordError();
+            registry.operation(operation).record(System.nanoTime() - began, 0, 0, true);
+            throw e;
+        }
+        long acquired = System.nanoTime();
+        acquire.record(acquired - began);
+        return proxy(Connection.class, new Lease(operation, connection, acquired));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("连接池不支持按用户取连接");
+    }
+
+    // 取调用栈上连续的仓库帧中最外层的一个，例如 borrowBook 经 inTransaction 取连接时记为 borrowBook
+    private static String operationName() {
+        return WALKER.walk(frames -> {
+            String name = null;
+            for (Iterator<StackWalker.StackFrame> it = frames.iterator(); it.hasNext(); ) {
+                StackWalker.StackFrame frame = it.next();
+                if (!frame.getDeclaringClass().getPackageName().equals(REPOSITORY_PACKAGE)) {
+                    if (name != null) {
+                        break;
+                    }
+                    continue;
+                }
+                if (!frame.getMethodName().startsWith("lambda$")) {
+                    name = frame.getMethodName();
+                }
+            }
+            return name == null ? OTHER : name;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(MeteredDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // 一次连接借出；连接同一时间只由一个线程使用，字段不需要同步
+    private final class Lease implements InvocationHandler {
+        private final String operation;
+        private final Connection connection;
+        private final long acquired;
+        private long rows;
+        private int statements;
+        private boolean failed;
+        private boolean closed;
+
+        Lease(String operation, Connection connection, long acquired) {
+            this.operation = operation;
+            this.connection = connection;
+            this.acquired = acquired;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        registry.operation(operation).record(System.nanoTime() - acquired, rows, statements, failed);
+                    }
+                    return call(connection, method, args);
+                }
+                case "prepareStatement" -> {
+                    return proxy(PreparedStatement.class,
+                            new StatementHandler(this, (Statement) call(connection, method, args), (String) args[0]));
+                }
+                case "prepareCall" -> {
+                    return proxy(CallableStatement.class,
+                            new StatementHandler(this, (Statement) call(connection, method, args), (String) args[0]));
+                }
+                case "createStatement" -> {
+                    return proxy(Statement.class,
+                            new StatementHandler(this, (Statement) call(connection, method, args), null));
+                }
+                default -> {
+                    return call(connection, method, args);
+                }
+            }
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Lease lease;
+        private final Statement statement;
+        private final String sql;
+        private final List<Object> parameters = new ArrayList<>();
+        private int batchSize;
+
+        StatementHandler(Lease lease, Statement statement, String sql) {
+            this.lease = lease;
+            this.statement = statement;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (EXECUTE.contains(name)) {
+                return execute(method, args);
+            }
+            switch (name) {
+                case "clearParameters" -> parameters.clear();
+                case "addBatch" -> batchSize++;
+                case "clearBatch" -> batchSize = 0;
+                case "getResultSet" -> {
+                    return countRows((ResultSet) call(statement, method, args));
+                }
+                default -> {
+                    // setLong(1, x)、setString(2, s) 等按位置绑定的参数
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                        while (parameters.size() < index) {
+                            parameters.add(null);
+                        }
+                        parameters.set(index - 1, name.equals("setNull") ? null : args[1]);
+                    }
+                }
+            }
+            return call(statement, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String text = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+            int batch = method.getName().endsWith("Batch") ? batchSize : 0;
+            long began = System.nanoTime();
+            Object result;
+            try {
+                result = call(statement, method, args);
+            } catch (Throwable e) {
+                lease.failed = true;
+                lease.statements++;
+                publish(text, batch, System.nanoTime() - began, 0, e);
+                throw e;
+            }
+            long nanos = System.nanoTime() - began;
+            lease.statements++;
+            long affected = affectedRows(result);
+            lease.rows += affected;
+            if (batch > 0) {
+                batchSize = 0;
+            }
+            publish(text, batch, nanos, affected, null);
+            return result instanceof ResultSet rs ? countRows(rs) : result;
+        }
+
+        private void publish(String text, int batch, long nanos, long affected, Throwable error) {
+            if (registry.hasQueryListeners()) {
+                List<Object> snapshot = Collections.unmodifiableList(new ArrayList<>(parameters));
+                registry.executed(new QueryEvent(lease.operation, text, snapshot, batch, nanos, affected, error));
+            }
+        }
+
+        private ResultSet countRows(ResultSet rs) {
+            if (rs == null) {
+                return null;
+            }
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                Object result = call(rs, method, args);
+                if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                    lease.rows++;
+                }
+                return result;
+            });
+        }
+    }
+
+    // 查询的行数在读取结果集时计入方法统计，执行时返回 0
+    private static long affectedRows(Object result) {
+        if (result instanceof Integer count) {
+            return Math.max(0, count);
+        }
+        if (result instanceof Long count) {
+            return Math.max(0, count);
+        }
+        if (result instanceof int[] counts) {
+            return Arrays.stream(counts).filter(c -> c > 0).asLongStream().sum();
+        }
+        if (result instanceof long[] counts) {
+            return Arrays.stream(counts).filter(c -> c > 0).sum();
+        }
+        return 0;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        return type.isInstance(this) ? type.cast(this) : delegate.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || delegate.isWrapperFor(type);
+    }
+}
@@ -0,0 +1,316 @@
+package com.library.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * 仓库方法、连接获取和连接池的统计。方法统计由 {@link MeteredDataSource} 记录，
+ * 连接池、缓存等的当前值以 gauge 或 counter 的形式登记，读取时才取值。
+ * 统计可以通过 JMX、本地 HTTP 端点或定期写出的文件以 Prometheus 文本格式读取。
+ */
+public final class MetricsRegistry {
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+    private static final Logger slowQueries = LoggerFactory.getLogger("com.library.metrics.SlowQuery");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final int MAX_LOGGED_PARAMETER = 100;
+
+    private enum Type {
+        GAUGE, COUNTER
+    }
+
+    private record Sample(String name, String help, Type type, Map<String, String> labels, DoubleSupplier value) {
+    }
+
+    private final boolean jmx;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> connectionAcquire = new ConcurrentHashMap<>();
+    // 同名同标签的登记会替换之前的，例如重新创建的缓存
+    private final ConcurrentMap<String, Sample> samples = new ConcurrentHashMap<>();
+    private final List<QueryListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "metrics-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile HttpServer server;
+
+    public MetricsRegistry(boolean jmx) {
+        this.jmx = jmx;
+    }
+
+    public OperationMetrics operation(String name) {
+        OperationMetrics metrics = operations.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        return operations.computeIfAbsent(name, key -> {
+            OperationMetrics created = new OperationMetrics(key);
+            registerMBean("com.library:type=RepositoryOperation,name=" + ObjectName.quote(key), created);
+            return created;
+        });
+    }
+
+    /** 按方法名排序的快照。 */
+    public List<OperationMetrics> operations() {
+        List<OperationMetrics> snapshot = new ArrayList<>(operations.values());
+        snapshot.sort(Comparator.comparing(OperationMetrics::name));
+        return snapshot;
+    }
+
+    /** 从连接池取得连接的等待时间，取连接失败（如超时）计为错误。 */
+    public LatencyHistogram connectionAcquire(String pool) {
+        return connectionAcquire.computeIfAbsent(pool, key -> new LatencyHistogram());
+    }
+
+    public void gauge(String name, String help, Map<String, String> labels, DoubleSupplier value) {
+        register(new Sample(name, help, Type.GAUGE, labels, value));
+    }
+
+    public void counter(String name, String help, Map<String, String> labels, DoubleSupplier value) {
+        register(new Sample(name, help, Type.COUNTER, labels, value));
+    }
+
+    private void register(Sample sample) {
+        samples.put(sample.name() + new TreeMap<>(sample.labels()), sample);
+    }
+
+    public void addQueryListener(QueryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeQueryListener(QueryListener listener) {
+        listeners.remove(listener);
+    }
+
+    boolean hasQueryListeners() {
+        return !listeners.isEmpty();
+    }
+
+    void executed(QueryEvent event) {
+        for (QueryListener listener : listeners) {
+            try {
+                listener.executed(event);
+            } catch (RuntimeException e) {
+                log.warn("查询监听器执行失败", e);
+            }
+        }
+    }
+
+    /** 执行时间达到 threshold 的语句连同参数记入 com.library.metrics.SlowQuery 日志。 */
+    public static QueryListener slowQueryLog(Duration threshold) {
+        long thresholdNanos = threshold.toNanos();
+        return event -> {
+            if (event.nanos() < thresholdNanos) {
+                return;
+            }
+            String parameters = event.parameters().stream()
+                    .map(MetricsRegistry::abbreviate)
+                    .collect(Collectors.joining(", ", "[", "]"));
+            if (event.batchSize() > 0) {
+                parameters = "批量 " + event.batchSize() + " 组，最后一组 " + parameters;
+            }
+            slowQueries.warn("慢查询 {} {} ms: {} 参数 {}{}", event.operation(), String.format("%.1f", event.millis()),
+                    event.sql(), parameters, event.error() == null ? "" : " 失败: " + event.error().getMessage());
+        };
+    }
+
+    private static String abbreviate(Object value) {
+        String text = String.valueOf(value);
+        return text.length() <= MAX_LOGGED_PARAMETER ? text : text.substring(0, MAX_LOGGED_PARAMETER) + "...";
+    }
+
+    /** Prometheus 文本格式（0.0.4）。 */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        List<OperationMetrics> snapshot = operations();
+        header(out, "library_repository_operation_seconds", "仓库方法耗时，从取得连接到归还连接", "summary");
+        for (OperationMetrics op : snapshot) {
+            summary(out, "library_repository_operation_seconds", "operation", op.name(), op.latency());
+        }
+        header(out, "library_repository_operation_errors_total", "仓库方法中语句执行失败的次数", "counter");
+        for (OperationMetrics op : snapshot) {
+            sample(out, "library_repository_operation_errors_total", labels("operation", op.name()), op.getErrors());
+        }
+        header(out, "library_repository_rows_total", "仓库方法写入或读取的行数", "counter");
+        for (OperationMetrics op : snapshot) {
+            sample(out, "library_repository_rows_total", labels("operation", op.name()), op.getRows());
+        }
+        header(out, "library_repository_statements_total", "仓库方法执行的语句数", "counter");
+        for (OperationMetrics op : snapshot) {
+            sample(out, "library_repository_statements_total", labels("operation", op.name()), op.getStatements());
+        }
+        header(out, "library_pool_connection_acquire_seconds", "从连接池取得连接的等待时间", "summary");
+        Map<String, LatencyHistogram> pools = new TreeMap<>(connectionAcquire);
+        pools.forEach((pool, histogram) -> summary(out, "library_pool_connection_acquire_seconds", "pool", pool, histogram));
+        header(out, "library_pool_connection_acquire_errors_total", "从连接池取连接失败的次数", "counter");
+        pools.forEach((pool, histogram) ->
+                sample(out, "library_pool_connection_acquire_errors_total", labels("pool", pool), histogram.errors()));
+        String previous = null;
+        for (Sample sample : new TreeMap<>(samples).values()) {
+            if (!sample.name().equals(previous)) {
+                header(out, sample.name(), sample.help(), sample.type().name().toLowerCase());
+                previous = sample.name();
+            }
+            double value;
+            try {
+                value = sample.value().getAsDouble();
+            } catch (RuntimeException e) {
+                // 例如连接池已关闭
+                continue;
+            }
+            sample(out, sample.name(), labels(sample.labels()), value);
+        }
+        return out.toString();
+    }
+
+    /** 先写入临时文件再改名，读取方不会看到写了一半的文件。 */
+    public void dump(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, scrape(), StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void scheduleDump(Path file, Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                dump(file);
+            } catch (IOException | RuntimeException e) {
+                log.warn("写出统计文件 {} 失败", file, e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /** 在本机回环地址上提供 GET /metrics，供本地的 Prometheus 或 node_exporter 抓取。 */
+    public synchronized void serve(int port) throws IOException {
+        if (server != null) {
+            return;
+        }
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        // 分发线程继承启动线程的守护属性，在守护线程中启动，使命令行工具结束时不必显式关闭端点
+        Thread starter = new Thread(http::start, "metrics-http-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = http;
+        log.info("统计端点 http://{}:{}/metrics", InetAddress.getLoopbackAddress().getHostAddress(),
+                http.getAddress().getPort());
+    }
+
+    public synchronized void close() {
+        scheduler.shutdownNow();
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                mbeans.unregisterMBean(name);
+            } catch (JMException e) {
+                log.debug("注销 MBean {} 失败", name, e);
+            }
+        }
+        registered.clear();
+    }
+
+    private void registerMBean(String name, Object bean) {
+        if (!jmx) {
+            return;
+        }
+        try {
+            ObjectName objectName = new ObjectName(name);
+            MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+            if (!mbeans.isRegistered(objectName)) {
+                mbeans.registerMBean(bean, objectName);
+                registered.add(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("注册 MBean {} 失败", name, e);
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String value, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            sample(out, name, labels(Map.of(label, value, "quantile", String.valueOf(quantile))),
+                    histogram.percentileMillis(quantile * 100) / 1000.0);
+        }
+        sample(out, name + "_sum", labels(label, value), histogram.totalNanos() / 1_000_000_000.0);
+        sample(out, name + "_count", labels(label, value), histogram.count());
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String labels(String name, String value) {
+        return labels(Map.of(name, value));
+    }
+
+    private static String labels(Map<String, String> labels) {
+        if (labels.isEmpty()) {
+            return "";
+        }
+        return new TreeMap<>(labels).entrySet().stream()
+                .map(e -> e.getKey() + "=\"" + e.getValue().replace("\\", "\\\\").replace("\"", "\\\"")
+                        .replace("\n", "\\n") + "\"")
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+}
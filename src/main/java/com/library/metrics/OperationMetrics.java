@@ -0,0 +1,75 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个仓库方法的耗时、影响或读取的行数、执行的语句数和失败次数。
+ * 耗时从取得连接起到归还连接为止，包含事务内的全部语句。
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    void record(long nanos, long rowCount, int statementCount, boolean failed) {
+        latency.record(nanos);
+        rows.add(rowCount);
+        statements.add(statementCount);
+        if (failed) {
+            latency.recordError();
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return latency.count();
+    }
+
+    @Override
+    public long getErrors() {
+        return latency.errors();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.meanMillis();
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.percentileMillis(50);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.percentileMillis(99);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.maxMillis();
+    }
+}
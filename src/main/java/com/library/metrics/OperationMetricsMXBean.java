@@ -0,0 +1,20 @@
+package com.library.metrics;
+
+/** 一个仓库方法的统计，在 JMX 中注册为 com.library:type=RepositoryOperation,name=<方法名>。 */
+public interface OperationMetricsMXBean {
+    long getCount();
+
+    long getErrors();
+
+    long getRows();
+
+    long getStatements();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,14 @@
+package com.library.metrics;
+
+import java.util.List;
+
+/**
+ * 一条语句的执行记录。operation 是发起查询的仓库方法名；批量执行时 parameters 是最后一组参数，
+ * batchSize 为批内的组数，非批量执行时为 0。
+ */
+public record QueryEvent(String operation, String sql, List<Object> parameters, int batchSize, long nanos,
+                         long rows, Throwable error) {
+    public double millis() {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,9 @@
+package com.library.metrics;
+
+/**
+ * 每条语句执行完成后在执行线程上调用，可用于慢查询日志或接入外部追踪系统；实现应尽快返回。
+ */
+@FunctionalInterface
+public interface QueryListener {
+    void executed(QueryEvent event);
+}
@@ -0,0 +1,12 @@
+package com.library.model;
+
+/** 批处理中一项的结果；成功时 id 为新建或处理的借阅、收款记录的 ID。 */
+public record BatchItemResult(int index, boolean success, long id, String error) {
+    public static BatchItemResult ok(int index, long id) {
+        return new BatchItemResult(index, true, id, null);
+    }
+
+    public static BatchItemResult failed(int index, String error) {
+        return new BatchItemResult(index, false, 0, error);
+    }
+}
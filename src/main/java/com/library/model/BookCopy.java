@@ -0,0 +1,14 @@
+package com.library.model;
+
+/** 馆藏中的一个副本；扫码借还时按条码定位，location 为馆藏位置（如书架号），可为空。 */
+public record BookCopy(
+        long id,
+        long bookId,
+        String barcode,
+        Status status,
+        String location
+) {
+    public enum Status {
+        AVAILABLE, ON_LOAN, ON_HOLD, LOST, WITHDRAWN
+    }
+}
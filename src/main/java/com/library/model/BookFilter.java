@@ -0,0 +1,17 @@
+package com.library.model;
+
+public record BookFilter(Long categoryId, boolean availableOnly) {
+    private static final BookFilter ALL = new BookFilter(null, false);
+
+    public static BookFilter all() {
+        return ALL;
+    }
+
+    public BookFilter withCategory(long categoryId) {
+        return new BookFilter(categoryId, availableOnly);
+    }
+
+    public BookFilter available() {
+        return new BookFilter(categoryId, true);
+    }
+}
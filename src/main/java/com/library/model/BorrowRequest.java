@@ -0,0 +1,6 @@
+package com.library.model;
+
+import java.time.LocalDate;
+
+public record BorrowRequest(long readerId, long bookId, LocalDate dueDate) {
+}
@@ -0,0 +1,45 @@
+package com.library.model;
+
+/**
+ * 借阅规则：在借册数上限、允许借阅和续借的未缴罚金上限（分）、每笔借阅的续借次数上限，
+ * 以及是否拒绝借阅证过期的读者。检查方法满足规则时返回 null，否则返回拒绝原因。
+ */
+public record BorrowingPolicy(
+        int maxLoans,
+        long maxFineCents,
+        int maxRenewals,
+        boolean checkCardExpiry
+) {
+    public BorrowingPolicy {
+        if (maxLoans < 0 || maxFineCents < 0 || maxRenewals < 0) {
+            throw new IllegalArgumentException("借阅规则的上限不能为负数");
+        }
+    }
+
+    /** pending 为同一批次中已为该读者接受、尚未计入 openLoans 的借阅数。 */
+    public String denyBorrow(ReaderStanding standing, int pending) {
+        String denied = denyReader(standing);
+        if (denied == null && standing.openLoans() + pending >= maxLoans) {
+            denied = "在借 " + (standing.openLoans() + pending) + " 册，已达上限 " + maxLoans + " 册";
+        }
+        return denied;
+    }
+
+    public String denyRenewal(ReaderStanding standing, int renewals) {
+        String denied = denyReader(standing);
+        if (denied == null && renewals >= maxRenewals) {
+            denied = "已续借 " + renewals + " 次，已达上限 " + maxRenewals + " 次";
+        }
+        return denied;
+    }
+
+    private String denyReader(ReaderStanding standing) {
+        if (checkCardExpiry && standing.cardExpired()) {
+            return "借阅证已过期";
+        }
+        if (standing.outstandingFineCents() > maxFineCents) {
+            return "未缴罚金 " + Money.format(standing.outstandingFineCents()) + " 元，超过上限 " + Money.format(maxFineCents) + " 元";
+        }
+        return null;
+    }
+}
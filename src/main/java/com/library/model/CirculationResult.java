@@ -0,0 +1,4 @@
+package com.library.model;
+
+public record CirculationResult(LoanDetail loan, int availableCopies) {
+}
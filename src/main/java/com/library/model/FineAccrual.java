@@ -0,0 +1,4 @@
+package com.library.model;
+
+public record FineAccrual(int loansUpdated, int readersUpdated) {
+}
@@ -10,6 +10,6 @@ public record Loan(
         LocalDate dueDate,
         LocalDate returnedDate,
         int renewals,
-        double finePaid
+        long finePaidCents
 ) {
 }
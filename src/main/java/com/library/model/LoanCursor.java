@@ -0,0 +1,9 @@
+package com.library.model;
+
+import java.time.LocalDate;
+
+public record LoanCursor(LocalDate borrowedDate, long id) {
+    public static LoanCursor of(LoanDetail loan) {
+        return new LoanCursor(loan.borrowedDate(), loan.id());
+    }
+}
@@ -12,6 +12,6 @@ public record LoanDetail(
         LocalDate dueDate,
         LocalDate returnedDate,
         int renewals,
-        double finePaid
+        long finePaidCents
 ) {
 }
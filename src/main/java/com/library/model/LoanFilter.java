@@ -0,0 +1,36 @@
+package com.library.model;
+
+public record LoanFilter(
+        Long readerId,
+        Long bookId,
+        Long categoryId,
+        boolean activeOnly,
+        boolean overdueOnly
+) {
+    private static final LoanFilter ALL = new LoanFilter(null, null, null, false, false);
+
+    public static LoanFilter all() {
+        return ALL;
+    }
+
+    public LoanFilter withReader(long readerId) {
+        return new LoanFilter(readerId, bookId, categoryId, activeOnly, overdueOnly);
+    }
+
+    public LoanFilter withBook(long bookId) {
+        return new LoanFilter(readerId, bookId, categoryId, activeOnly, overdueOnly);
+    }
+
+    public LoanFilter withCategory(long categoryId) {
+        return new LoanFilter(readerId, bookId, categoryId, activeOnly, overdueOnly);
+    }
+
+    public LoanFilter active() {
+        return new LoanFilter(readerId, bookId, categoryId, true, overdueOnly);
+    }
+
+    // 超期借阅一定是未归还的借阅
+    public LoanFilter overdue() {
+        return new LoanFilter(readerId, bookId, categoryId, true, true);
+    }
+}
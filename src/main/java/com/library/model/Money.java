@@ -0,0 +1,41 @@
+package com.library.model;
+
+import java.math.BigDecimal;
+
+/**
+ * 金额统一以分为单位的 long 表示，对应数据库的 DECIMAL(10,2) 列：查询时在 SQL 中乘 100 取整，
+ * 写入时以 ? / 100 绑定，罚金计算和汇总的热路径上不创建 BigDecimal。
+ */
+public final class Money {
+    private Money() {
+    }
+
+    /** 例如 1250 格式化为 "12.50"。 */
+    public static String format(long cents) {
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        return (cents < 0 ? "-" : "") + abs / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+
+    /** 解析界面输入的元，最多两位小数。 */
+    public static long parse(String text) {
+        BigDecimal value;
+        try {
+            value = new BigDecimal(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("金额格式不正确: " + text);
+        }
+        if (value.scale() > 2) {
+            throw new IllegalArgumentException("金额最多两位小数: " + text);
+        }
+        return fromDecimal(value);
+    }
+
+    public static long fromDecimal(BigDecimal value) {
+        return value.movePointRight(2).longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
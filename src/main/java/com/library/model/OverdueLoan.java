@@ -0,0 +1,16 @@
+package com.library.model;
+
+import java.time.LocalDate;
+
+public record OverdueLoan(
+        long loanId,
+        long readerId,
+        String readerName,
+        String cardNumber,
+        long bookId,
+        String bookTitle,
+        LocalDate dueDate,
+        int overdueDays,
+        long accruedFineCents
+) {
+}
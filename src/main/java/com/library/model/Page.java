@@ -0,0 +1,13 @@
+package com.library.model;
+
+import java.util.List;
+
+public record Page<T, C>(List<T> items, C nextCursor) {
+    public Page {
+        items = List.copyOf(items);
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,5 @@
+package com.library.model;
+
+/** 读者缴纳罚金；loanId 为 null 表示不对应某一笔借阅。 */
+public record PaymentRequest(long readerId, Long loanId, long amountCents) {
+}
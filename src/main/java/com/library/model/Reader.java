@@ -7,6 +7,6 @@ public record Reader(
         String name,
         String cardNumber,
         LocalDate cardExpiry,
-        double outstandingFine
+        long outstandingFineCents
 ) {
 }
@@ -0,0 +1,10 @@
+package com.library.model;
+
+/** 判断借阅资格所需的读者状况，由一条查询取出。 */
+public record ReaderStanding(
+        long readerId,
+        boolean cardExpired,
+        long outstandingFineCents,
+        int openLoans
+) {
+}
@@ -0,0 +1,25 @@
+package com.library.model;
+
+import java.time.LocalDateTime;
+
+/** 图书预约；queuePosition 为排队中的预约在该书队列中的位置（从 1 开始），其他状态为 0。 */
+public record Reservation(
+        long id,
+        long bookId,
+        String bookTitle,
+        long readerId,
+        String readerName,
+        Status status,
+        LocalDateTime createdAt,
+        LocalDateTime readyAt,
+        LocalDateTime expiresAt,
+        int queuePosition
+) {
+    public enum Status {
+        WAITING, READY, FULFILLED, CANCELLED, EXPIRED
+    }
+
+    public boolean active() {
+        return status == Status.WAITING || status == Status.READY;
+    }
+}
@@ -0,0 +1,5 @@
+package com.library.model;
+
+/** 一次过期清理的结果：过期未取的留书、排队超时的预约，以及转给下一位读者的留书数。 */
+public record ReservationSweep(int expiredHolds, int expiredWaits, int reassigned) {
+}
@@ -0,0 +1,6 @@
+package com.library.model;
+
+import java.time.LocalDate;
+
+public record ReturnRequest(long loanId, LocalDate returnedDate) {
+}
@@ -0,0 +1,17 @@
+package com.library.repository;
+
+import java.sql.SQLException;
+
+/** 读者不满足借阅规则（在借册数、未缴罚金、借阅证有效期或续借次数），消息为拒绝原因。 */
+public class BorrowingDeniedException extends SQLException {
+    private final long readerId;
+
+    public BorrowingDeniedException(long readerId, String reason) {
+        super(reason);
+        this.readerId = readerId;
+    }
+
+    public long getReaderId() {
+        return readerId;
+    }
+}
@@ -0,0 +1,300 @@
+package com.library.repository;
+
+import com.library.config.DatabaseManager;
+import com.library.event.DomainEvent;
+import com.library.metrics.MetricsRegistry;
+import com.library.model.BatchItemResult;
+import com.library.model.Book;
+import com.library.model.BookCopy;
+import com.library.model.BookDetail;
+import com.library.model.BorrowRequest;
+import com.library.model.Category;
+import com.library.model.PaymentRequest;
+import com.library.model.CirculationResult;
+import com.library.model.FineAccrual;
+import com.library.model.Publisher;
+import com.library.model.Reader;
+import com.library.model.Reservation;
+import com.library.model.ReservationSweep;
+import com.library.model.ReturnRequest;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * 在 {@link LibraryRepository} 前加一层读穿缓存：分类、出版社、图书和读者按 id 和 ISBN、借书证号缓存，
+ * 全量列表也缓存一份。本仓库自己的写操作会使相关条目失效；其他进程的修改最多在 TTL 之后可见，
+ * 开启 outbox 时则在 OutboxTailer 转发其事件后立即失效。
+ * ISBN 和借书证号只缓存到 id 的映射，id 不会改变，因此借还只需失效对应图书一条。
+ */
+public class CachingLibraryRepository extends LibraryRepository {
+    private static final String ALL = "all";
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+    private static final Duration DICTIONARY_TTL = Duration.ofMinutes(10);
+    private static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private final LookupCache<String, List<Category>> categories = new LookupCache<>("categories", 1, DICTIONARY_TTL);
+    private final LookupCache<String, List<Publisher>> publishers = new LookupCache<>("publishers", 1, DICTIONARY_TTL);
+    private final LookupCache<String, List<BookDetail>> bookList;
+    private final LookupCache<String, List<Reader>> readerList;
+    private final LookupCache<Long, Optional<BookDetail>> books;
+    private final LookupCache<String, Optional<Long>> bookIds;
+    private final LookupCache<Long, Optional<Reader>> readers;
+    private final LookupCache<String, Optional<Long>> readerIds;
+
+    public CachingLibraryRepository() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    public CachingLibraryRepository(int maxSize, Duration ttl) {
+        this.bookList = new LookupCache<>("bookList", 1, ttl);
+        this.readerList = new LookupCache<>("readerList", 1, ttl);
+        this.books = new LookupCache<>("booksById", maxSize, ttl);
+        this.bookIds = new LookupCache<>("booksByIsbn", maxSize, ttl);
+        this.readers = new LookupCache<>("readersById", maxSize, ttl);
+        this.readerIds = new LookupCache<>("readersByCard", maxSize, ttl);
+        MetricsRegistry metrics = DatabaseManager.getMetrics();
+        for (LookupCache<?, ?> cache : List.of(categories, publishers, bookList, readerList, books, bookIds, readers, readerIds)) {
+            cache.registerMetrics(metrics);
+        }
+        if (DatabaseManager.getConfig().eventOutbox()) {
+            events().subscribe(this::onEvent);
+        }
+    }
+
+    public List<LookupCache.Stats> cacheStats() {
+        return List.of(categories.stats(), publishers.stats(), bookList.stats(), readerList.stats(),
+                books.stats(), bookIds.stats(), readers.stats(), readerIds.stats());
+    }
+
+    @Override
+    public List<Category> listCategories() throws SQLException {
+        return categories.get(ALL, k -> List.copyOf(super.listCategories()));
+    }
+
+    @Override
+    public List<Publisher> listPublishers() throws SQLException {
+        return publishers.get(ALL, k -> List.copyOf(super.listPublishers()));
+    }
+
+    @Override
+    public List<BookDetail> listBooks() throws SQLException {
+        return bookList.get(ALL, k -> List.copyOf(super.listBooks()));
+    }
+
+    @Override
+    public List<Reader> listReaders() throws SQLException {
+        return readerList.get(ALL, k -> List.copyOf(super.listReaders()));
+    }
+
+    @Override
+    public Optional<BookDetail> findBookById(long id) throws SQLException {
+        return books.get(id, super::findBookById);
+    }
+
+    @Override
+    public Optional<BookDetail> findBookByIsbn(String isbn) throws SQLException {
+        Optional<Long> id = bookIds.get(isbn, k -> super.findBookByIsbn(k).map(BookDetail::id));
+        return id.isPresent() ? findBookById(id.get()) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Reader> findReaderById(long id) throws SQLException {
+        return readers.get(id, super::findReaderById);
+    }
+
+    @Override
+    public Optional<Reader> findReaderByCardNumber(String cardNumber) throws SQLException {
+        Optional<Long> id = readerIds.get(cardNumber, k -> super.findReaderByCardNumber(k).map(Reader::id));
+        return id.isPresent() ? findReaderById(id.get()) : Optional.empty();
+    }
+
+    @Override
+    public long upsertCategory(String name) throws SQLException {
+        try {
+            return super.upsertCategory(name);
+        } finally {
+            categories.invalidateAll();
+        }
+    }
+
+    @Override
+    public long upsertPublisher(String name) throws SQLException {
+        try {
+            return super.upsertPublisher(name);
+        } finally {
+            publishers.invalidateAll();
+        }
+    }
+
+    // 按 ISBN 更新已有图书时不知道其 id，图书相关缓存整体失效
+    @Override
+    public void insertBook(Book book) throws SQLException {
+        try {
+            super.insertBook(book);
+        } finally {
+            invalidateBooks();
+        }
+    }
+
+    @Override
+    public int upsertBooks(List<Book> books) throws SQLException {
+        try {
+            return super.upsertBooks(books);
+        } finally {
+            invalidateBooks();
+        }
+    }
+
+    @Override
+    public void insertReader(Reader reader) throws SQLException {
+        try {
+            super.insertReader(reader);
+        } finally {
+            // 借书证号已存在时更新的是已有读者，同样不知道其 id
+            readers.invalidateAll();
+            readerIds.invalidate(reader.cardNumber());
+            readerList.invalidateAll();
+        }
+    }
+
+    @Override
+    public CirculationResult borrowBook(long readerId, long bookId, LocalDate dueDate) throws SQLException {
+        try {
+            return super.borrowBook(readerId, bookId, dueDate);
+        } finally {
+            invalidateStock(bookId);
+        }
+    }
+
+    @Override
+    public CirculationResult borrowByBarcode(long readerId, String barcode, LocalDate dueDate) throws SQLException {
+        // 调用前不知道条码属于哪本书，也不为此多查一次；借阅失败时事务已回滚，在册数没有变化，不必失效
+        CirculationResult result = super.borrowByBarcode(readerId, barcode, dueDate);
+        invalidateStock(result.loan().bookId());
+        return result;
+    }
+
+    @Override
+    public BookCopy addCopy(long bookId, String barcode, String location) throws SQLException {
+        try {
+            return super.addCopy(bookId, barcode, location);
+        } finally {
+            invalidateStock(bookId);
+        }
+    }
+
+    @Override
+    public CirculationResult returnBook(long loanId, long fineCents) throws SQLException {
+        try {
+            CirculationResult result = super.returnBook(loanId, fineCents);
+            invalidateStock(result.loan().bookId());
+            invalidateReader(result.loan().readerId());
+            return result;
+        } catch (SQLException e) {
+            // 失败时不知道涉及哪本图书，保守地整体失效
+            invalidateBooks();
+            invalidateReaders();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<BatchItemResult> borrowBooks(List<BorrowRequest> requests) throws SQLException {
+        try {
+            return super.borrowBooks(requests);
+        } finally {
+            requests.forEach(request -> books.invalidate(request.bookId()));
+            bookList.invalidateAll();
+        }
+    }
+
+    @Override
+    public List<BatchItemResult> returnBooks(List<ReturnRequest> requests,
+                                             ToLongBiFunction<LocalDate, LocalDate> fineCalculator) throws SQLException {
+        try {
+            return super.returnBooks(requests, fineCalculator);
+        } finally {
+            invalidateBooks();
+            invalidateReaders();
+        }
+    }
+
+    @Override
+    public Reservation cancelReservation(long reservationId) throws SQLException {
+        try {
+            Reservation reservation = super.cancelReservation(reservationId);
+            invalidateStock(reservation.bookId());
+            return reservation;
+        } catch (SQLException e) {
+            invalidateBooks();
+            throw e;
+        }
+    }
+
+    // 清理定期运行，只有留书放回或重新分配、在册数可能变化时才失效
+    @Override
+    public ReservationSweep expireReservations(int limit) throws SQLException {
+        ReservationSweep sweep = super.expireReservations(limit);
+        if (sweep.expiredHolds() > 0 || sweep.reassigned() > 0) {
+            invalidateBooks();
+        }
+        return sweep;
+    }
+
+    @Override
+    public FineAccrual accrueFines(long fromReaderId, long toReaderId, LocalDate asOf, long dailyFineCents) throws SQLException {
+        try {
+            return super.accrueFines(fromReaderId, toReaderId, asOf, dailyFineCents);
+        } finally {
+            invalidateReaders();
+        }
+    }
+
+    @Override
+    public List<BatchItemResult> recordPayments(List<PaymentRequest> payments) throws SQLException {
+        try {
+            return super.recordPayments(payments);
+        } finally {
+            invalidateReaders();
+        }
+    }
+
+    // 本实例的事件也会到达这里，相关条目再失效一次，不影响正确性
+    private void onEvent(DomainEvent event) {
+        switch (event) {
+            case DomainEvent.BookAdded e -> invalidateBooks();
+            case DomainEvent.StockChanged e -> invalidateStock(e.bookId());
+            case DomainEvent.LoanReturned e -> invalidateReader(e.readerId());
+            case DomainEvent.LoanRenewed e -> invalidateReader(e.readerId());
+            default -> {
+            }
+        }
+    }
+
+    private void invalidateStock(long bookId) {
+        books.invalidate(bookId);
+        bookList.invalidateAll();
+    }
+
+    // 还书和计提罚金会改变读者的未缴罚金
+    private void invalidateReader(long readerId) {
+        readers.invalidate(readerId);
+        readerList.invalidateAll();
+    }
+
+    private void invalidateReaders() {
+        readers.invalidateAll();
+        readerList.invalidateAll();
+    }
+
+    private void invalidateBooks() {
+        books.invalidateAll();
+        bookIds.invalidateAll();
+        bookList.invalidateAll();
+    }
+}
@@ -1,96 +1,999 @@
 package com.library.repository;
 
+import com.library.config.DatabaseConfig;
 import com.library.config.DatabaseManager;
+import com.library.event.DomainEvent;
+import com.library.event.EventBus;
+import com.library.event.OutboxEntry;
+import com.library.model.BatchItemResult;
 import com.library.model.Book;
+import com.library.model.BookCopy;
 import com.library.model.BookDetail;
+import com.library.model.BookFilter;
+import com.library.model.BorrowRequest;
+import com.library.model.BorrowingPolicy;
 import com.library.model.Category;
+import com.library.model.CirculationResult;
+import com.library.model.FineAccrual;
 import com.library.model.Loan;
+import com.library.model.LoanCursor;
 import com.library.model.LoanDetail;
+import com.library.model.LoanFilter;
+import com.library.model.OverdueLoan;
+import com.library.model.Page;
+import com.library.model.PaymentRequest;
 import com.library.model.Publisher;
 import com.library.model.Reader;
+import com.library.model.ReaderStanding;
+import com.library.model.Reservation;
+import com.library.model.ReservationSweep;
+import com.library.model.ReturnRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class LibraryRepository {
+    private static final Logger log = LoggerFactory.getLogger(LibraryRepository.class);
+    // 在册数为在架副本数，走 book_copies 的 (book_id, status, id) 索引；借还只改副本行，不再更新 books 的同一行
+    private static final String AVAILABLE_COPIES = "(SELECT COUNT(*) FROM book_copies bc WHERE bc.book_id = b.id AND bc.status = 'AVAILABLE')";
+    private static final String BOOK_DETAIL_SELECT = "SELECT b.id, b.isbn, b.title, b.category_id, c.name AS category_name, " +
+            "b.publisher_id, p.name AS publisher_name, b.published_date, b.total_copies, " + AVAILABLE_COPIES + " AS available_copies " +
+            "FROM books b JOIN categories c ON c.id = b.category_id JOIN publishers p ON p.id = b.publisher_id";
+    private static final String READER_SELECT = "SELECT r.id, r.name, r.card_number, r.card_expiry, " +
+            "CAST(r.outstanding_fine * 100 AS SIGNED) AS outstanding_fine_cents FROM readers r";
+    private static final String LOAN_DETAIL_SELECT = "SELECT l.id, l.book_id, b.title AS book_title, l.reader_id, r.name AS reader_name, " +
+            "l.borrowed_date, l.due_date, l.returned_date, l.renewals, CAST(l.fine_paid * 100 AS SIGNED) AS fine_paid_cents FROM loans l " +
+            "JOIN books b ON b.id = l.book_id JOIN readers r ON r.id = l.reader_id";
+
+    // 金额以分绑定和读取，见 Money。还书时罚金在柜台结清：读者余额扣回这笔借阅已计提但未预缴的罚金，
+    // fine_paid 为这笔借阅缴纳的罚金总额，柜台只对还书前未预缴的部分记一笔收款
+    private static final String RETURN_LOAN = "UPDATE loans l JOIN readers r ON r.id = l.reader_id " +
+            "SET r.outstanding_fine = r.outstanding_fine - (l.accrued_fine - l.fine_prepaid), " +
+            "l.returned_date = CURDATE(), l.fine_paid = GREATEST(? / 100, l.fine_prepaid) WHERE l.id = ? AND l.returned_date IS NULL";
+    private static final String RETURN_PAYMENT = "INSERT INTO payments (reader_id, loan_id, amount) " +
+            "SELECT reader_id, id, fine_paid - fine_prepaid FROM loans WHERE id = ? AND fine_paid > fine_prepaid";
+    // 计提罚金不低于已预缴的金额：续借后按新到期日重新计提时，已缴的部分不退
+    private static final String ACCRUED_FINE = "GREATEST(DATEDIFF(?, l.due_date) * ? / 100, l.fine_prepaid)";
+    private static final String FINE_CHANGED = "l.returned_date IS NULL AND l.reader_id >= ? AND l.reader_id < ? " +
+            "AND l.due_date < ? AND l.accrued_fine <> " + ACCRUED_FINE;
+
+    // 借阅资格所需的读者状况：在借册数走 (returned_date, reader_id, due_date) 索引
+    private static final String READER_STANDING = "SELECT r.id, r.card_expiry < CURDATE() AS card_expired, " +
+            "CAST(r.outstanding_fine * 100 AS SIGNED) AS outstanding_fine_cents, " +
+            "(SELECT COUNT(*) FROM loans l WHERE l.returned_date IS NULL AND l.reader_id = r.id) AS open_loans FROM readers r";
+    private static final String POLICY_SELECT = "SELECT max_loans, CAST(max_fine * 100 AS SIGNED) AS max_fine_cents, " +
+            "max_renewals, check_card_expiry FROM borrowing_policy WHERE id = 1";
+
+    private static final String COPY_SELECT = "SELECT id, book_id, barcode, status, location FROM book_copies";
+
+    private static final String INSERT_OUTBOX = "INSERT INTO event_outbox " +
+            "(event_type, book_id, loan_id, reader_id, isbn, event_date, amount, origin) VALUES (?,?,?,?,?,?,?,?)";
+
+    // 排队中的预约附带队列位置：同一本书排在它之前（含自身）的排队预约数，走 (book_id, status, id) 索引
+    private static final String RESERVATION_SELECT = "SELECT v.id, v.book_id, b.title AS book_title, v.reader_id, " +
+            "r.name AS reader_name, v.status, v.created_at, v.ready_at, v.expires_at, " +
+            "CASE WHEN v.status = 'WAITING' THEN (SELECT COUNT(*) FROM reservations q WHERE q.book_id = v.book_id " +
+            "AND q.status = 'WAITING' AND q.id <= v.id) ELSE 0 END AS queue_position " +
+            "FROM reservations v JOIN books b ON b.id = v.book_id JOIN readers r ON r.id = v.reader_id";
+
+    private static final int IN_CHUNK_SIZE = 1000;
+    private static final int EVENT_BUS_CAPACITY = 8192;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_DUP_ENTRY = 1062;
+    private static final int ER_NO_REFERENCED_ROW = 1452;
+    private static final Pattern ISBN_PREFIX = Pattern.compile("[0-9][0-9Xx-]*");
+    private static final Pattern CARD_PREFIX = Pattern.compile("[A-Za-z0-9-]*[0-9-][A-Za-z0-9-]*");
+
     private final DataSource dataSource;
+    // 列表、分页、计数和报表查询由 ReadRouter 在只读库和主库之间选择；未配置只读库时总是主库
+    private final ReadRouter reads;
+    private final int streamFetchSize;
+    // 本实例提交的变更发布到 eventBus；开启 outbox 时还写入 event_outbox，origin 用于让 OutboxTailer 跳过本实例写入的事件
+    private final EventBus eventBus = new EventBus(EVENT_BUS_CAPACITY);
+    private final String origin = UUID.randomUUID().toString();
+    private final boolean outbox;
+    private final int holdDays;
+    private final int maxWaitDays;
+    // 借阅规则在首次使用时载入，之后由 reloadPolicy 定期刷新；借阅时只读这个字段，不查询规则表
+    private volatile BorrowingPolicy policy;
 
     public LibraryRepository() {
         this.dataSource = DatabaseManager.getDataSource();
+        DatabaseConfig config = DatabaseManager.getConfig();
+        this.reads = new ReadRouter(dataSource, DatabaseManager.getReadDataSource(),
+                DatabaseManager.getReplicaLagMonitor(), config);
+        // 开启服务端游标时按 fetch-size 分批取行；否则 MySQL 驱动只在 Integer.MIN_VALUE 时逐行流式读取
+        this.streamFetchSize = config.useCursorFetch() ? config.streamFetchSize() : Integer.MIN_VALUE;
+        this.outbox = config.eventOutbox();
+        this.holdDays = config.reservationHoldDays();
+        this.maxWaitDays = config.reservationMaxWaitDays();
+    }
+
+    public EventBus events() {
+        return eventBus;
+    }
+
+    public String origin() {
+        return origin;
     }
 
     public void insertBook(Book book) throws SQLException {
         String sql = "INSERT INTO books (isbn, title, category_id, publisher_id, published_date, total_copies, available_copies) " +
                 "VALUES (?,?,?,?,?,?,?) ON DUPLICATE KEY UPDATE title=VALUES(title), category_id=VALUES(category_id), " +
-                "publisher_id=VALUES(publisher_id), published_date=VALUES(published_date), total_copies=VALUES(total_copies), " +
-                "available_copies=VALUES(available_copies)";
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, book.isbn());
-            statement.setString(2, book.title());
-            statement.setLong(3, book.categoryId());
-            statement.setLong(4, book.publisherId());
-            statement.setObject(5, book.publishedDate());
-            statement.setInt(6, book.totalCopies());
-            statement.setInt(7, book.availableCopies());
-            statement.executeUpdate();
+                "publisher_id=VALUES(publisher_id), published_date=VALUES(published_date), total_copies=VALUES(total_copies)";
+        List<DomainEvent> emitted = List.of(new DomainEvent.BookAdded(book.isbn()));
+        inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, book.isbn());
+                statement.setString(2, book.title());
+                statement.setLong(3, book.categoryId());
+                statement.setLong(4, book.publisherId());
+                statement.setObject(5, book.publishedDate());
+                statement.setInt(6, book.totalCopies());
+                statement.setInt(7, book.availableCopies());
+                statement.executeUpdate();
+            }
+            syncCopies(connection, List.of(book.isbn()));
+            appendOutbox(connection, emitted);
+            return null;
+        });
+        eventBus.publishAll(emitted);
+    }
+
+    public int upsertBooks(List<Book> books) throws SQLException {
+        if (books.isEmpty()) {
+            return 0;
         }
+        // 在册数由副本得出，已存在的图书只更新总册数，随后按总册数补齐或剔旧副本
+        String sql = "INSERT INTO books (isbn, title, category_id, publisher_id, published_date, total_copies, available_copies) VALUES " +
+                String.join(",", Collections.nCopies(books.size(), "(?,?,?,?,?,?,?)")) +
+                " ON DUPLICATE KEY UPDATE title=VALUES(title), category_id=VALUES(category_id), publisher_id=VALUES(publisher_id), " +
+                "published_date=VALUES(published_date), total_copies=VALUES(total_copies)";
+        List<String> isbns = books.stream().map(Book::isbn).toList();
+        List<DomainEvent> emitted = isbns.stream().<DomainEvent>map(DomainEvent.BookAdded::new).toList();
+        int updated = inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                for (Book book : books) {
+                    statement.setString(index++, book.isbn());
+                    statement.setString(index++, book.title());
+                    statement.setLong(index++, book.categoryId());
+                    statement.setLong(index++, book.publisherId());
+                    statement.setObject(index++, book.publishedDate());
+                    statement.setInt(index++, book.totalCopies());
+                    statement.setInt(index++, book.availableCopies());
+                }
+                int count = statement.executeUpdate();
+                syncCopies(connection, isbns);
+                appendOutbox(connection, emitted);
+                return count;
+            }
+        });
+        eventBus.publishAll(emitted);
+        return updated;
     }
 
     public void insertReader(Reader reader) throws SQLException {
-        String sql = "INSERT INTO readers (name, card_number, card_expiry, outstanding_fine) VALUES (?,?,?,?) " +
+        String sql = "INSERT INTO readers (name, card_number, card_expiry, outstanding_fine) VALUES (?,?,?,? / 100) " +
                 "ON DUPLICATE KEY UPDATE name=VALUES(name), card_expiry=VALUES(card_expiry)";
         try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setString(1, reader.name());
             statement.setString(2, reader.cardNumber());
             statement.setObject(3, reader.cardExpiry());
-            statement.setDouble(4, reader.outstandingFine());
+            statement.setLong(4, reader.outstandingFineCents());
             statement.executeUpdate();
         }
+        reads.wrote();
     }
 
-    public void borrowBook(long readerId, long bookId, LocalDate dueDate) throws SQLException {
-        String sql = "INSERT INTO loans (book_id, reader_id, borrowed_date, due_date, renewals, fine_paid) VALUES (?,?,CURDATE(),?,0,0)";
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql)) {
+    public CirculationResult borrowBook(long readerId, long bookId, LocalDate dueDate) throws SQLException {
+        CirculationResult result = inTransaction(connection -> {
+            checkBorrower(connection, readerId);
+            // 读者有该书的留书时借走为他保留的副本，否则取一个在架副本
+            ActiveReservation hold = lockActiveReservations(connection, Set.of(bookId), Set.of(readerId))
+                    .get(new ReservationKey(bookId, readerId));
+            long copyId;
+            if (hold != null && hold.ready()) {
+                copyId = hold.copyId();
+            } else {
+                List<Long> copies = lockAvailableCopies(connection, bookId, 1);
+                if (copies.isEmpty()) {
+                    throw new OutOfStockException(bookId);
+                }
+                copyId = copies.get(0);
+            }
+            return checkout(connection, bookId, copyId, readerId, dueDate, hold);
+        });
+        eventBus.publishAll(borrowedEvents(result));
+        return result;
+    }
+
+    /**
+     * 按扫到的条码借出该副本。副本须在架，或是为该读者保留的留书；
+     * 读者有留书却借了另一个在架副本时，留书的副本转给下一位排队的读者。
+     */
+    public CirculationResult borrowByBarcode(long readerId, String barcode, LocalDate dueDate) throws SQLException {
+        CirculationResult result = inTransaction(connection -> {
+            checkBorrower(connection, readerId);
+            long copyId;
+            long bookId;
+            BookCopy.Status status;
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, book_id, status FROM book_copies WHERE barcode = ? FOR UPDATE")) {
+                statement.setString(1, barcode);
+                ResultSet rs = statement.executeQuery();
+                if (!rs.next()) {
+                    throw new SQLException("条码不存在: " + barcode);
+                }
+                copyId = rs.getLong("id");
+                bookId = rs.getLong("book_id");
+                status = BookCopy.Status.valueOf(rs.getString("status"));
+            }
+            ActiveReservation hold = lockActiveReservations(connection, Set.of(bookId), Set.of(readerId))
+                    .get(new ReservationKey(bookId, readerId));
+            boolean ownHold = hold != null && hold.ready() && hold.copyId() == copyId;
+            if (status == BookCopy.Status.ON_HOLD && !ownHold) {
+                throw new SQLException("该副本已为预约的读者保留");
+            }
+            if (status != BookCopy.Status.AVAILABLE && !ownHold) {
+                throw new SQLException("该副本当前不可借出");
+            }
+            if (hold != null && hold.ready() && !ownHold) {
+                shelveCopies(connection, Map.of(bookId, List.of(hold.copyId())));
+            }
+            return checkout(connection, bookId, copyId, readerId, dueDate, hold);
+        });
+        eventBus.publishAll(borrowedEvents(result));
+        return result;
+    }
+
+    // 副本已由调用方锁定：标记借出并插入借阅；排队或留书中的读者借到副本时预约同样结束
+    private CirculationResult checkout(Connection connection, long bookId, long copyId, long readerId, LocalDate dueDate,
+                                       ActiveReservation hold) throws SQLException {
+        setCopyStatus(connection, List.of(copyId), BookCopy.Status.ON_LOAN);
+        String sql = "INSERT INTO loans (book_id, copy_id, reader_id, borrowed_date, due_date, renewals, fine_paid) " +
+                "VALUES (?,?,?,CURDATE(),?,0,0)";
+        try (PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
             statement.setLong(1, bookId);
-            statement.setLong(2, readerId);
-            statement.setObject(3, dueDate);
+            statement.setLong(2, copyId);
+            statement.setLong(3, readerId);
+            statement.setObject(4, dueDate);
             statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (keys.next()) {
+                    long loanId = keys.getLong(1);
+                    if (hold != null) {
+                        fulfillReservations(connection, Map.of(hold.id(), loanId));
+                    }
+                    CirculationResult borrowed = findCirculationResult(connection, loanId);
+                    appendOutbox(connection, borrowedEvents(borrowed));
+                    return borrowed;
+                }
+            }
         }
+        throw new SQLException("无法获取借阅 ID");
     }
 
-    public void renewLoan(long loanId, LocalDate newDueDate) throws SQLException {
-        String sql = "UPDATE loans SET due_date=?, renewals=renewals+1 WHERE id=?";
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setObject(1, newDueDate);
-            statement.setLong(2, loanId);
-            statement.executeUpdate();
+    /**
+     * 续借。续借次数、借阅证有效期和未缴罚金的检查并入 UPDATE 的条件，不满足时再查询原因并抛出
+     * {@link BorrowingDeniedException}。续借后罚金按新的到期日计算，按原到期日计提而未预缴的罚金
+     * 在同一条语句中从读者余额冲回，随后把这笔借阅的计提罚金降到已预缴的金额。
+     */
+    public CirculationResult renewLoan(long loanId, LocalDate newDueDate) throws SQLException {
+        // 多表 UPDATE 不保证赋值顺序，读者余额按未改动的 accrued_fine 冲回，计提罚金由第二条语句重置
+        String sql = "UPDATE loans l JOIN readers r ON r.id = l.reader_id SET l.due_date = ?, l.renewals = l.renewals + 1, " +
+                "r.outstanding_fine = r.outstanding_fine - (l.accrued_fine - l.fine_prepaid) " +
+                "WHERE l.id = ? AND l.returned_date IS NULL AND l.renewals < ? " +
+                "AND r.outstanding_fine * 100 <= ? AND (? OR r.card_expiry >= CURDATE())";
+        String reset = "UPDATE loans SET accrued_fine = fine_prepaid WHERE id = ? AND accrued_fine > fine_prepaid";
+        CirculationResult result = inTransaction(connection -> {
+            BorrowingPolicy current = borrowingPolicy();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setObject(1, newDueDate);
+                statement.setLong(2, loanId);
+                statement.setInt(3, current.maxRenewals());
+                statement.setLong(4, current.maxFineCents());
+                statement.setBoolean(5, !current.checkCardExpiry());
+                if (statement.executeUpdate() == 0) {
+                    throw renewalDenied(connection, loanId, current);
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement(reset)) {
+                statement.setLong(1, loanId);
+                statement.executeUpdate();
+            }
+            CirculationResult renewed = findCirculationResult(connection, loanId);
+            appendOutbox(connection, renewedEvents(renewed));
+            return renewed;
+        });
+        eventBus.publishAll(renewedEvents(result));
+        return result;
+    }
+
+    private static SQLException renewalDenied(Connection connection, long loanId, BorrowingPolicy policy) throws SQLException {
+        long readerId;
+        int renewals;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT reader_id, returned_date, renewals FROM loans WHERE id = ?")) {
+            statement.setLong(1, loanId);
+            ResultSet rs = statement.executeQuery();
+            if (!rs.next()) {
+                return new SQLException("未找到对应的借阅记录");
+            }
+            if (rs.getObject("returned_date") != null) {
+                return new SQLException("该借阅已归还");
+            }
+            readerId = rs.getLong("reader_id");
+            renewals = rs.getInt("renewals");
+        }
+        ReaderStanding standing = lockReaderStandings(connection, Set.of(readerId)).get(readerId);
+        String denied = policy.denyRenewal(standing, renewals);
+        return denied != null ? new BorrowingDeniedException(readerId, denied) : new SQLException("续借失败，请重试");
+    }
+
+    public CirculationResult returnBook(long loanId, long fineCents) throws SQLException {
+        List<DomainEvent> emitted = new ArrayList<>();
+        CirculationResult result = inTransaction(connection -> {
+            emitted.clear();
+            OpenLoan open = lockOpenLoans(connection, Set.of(loanId)).get(loanId);
+            boolean returned;
+            try (PreparedStatement statement = connection.prepareStatement(RETURN_LOAN)) {
+                statement.setLong(1, fineCents);
+                statement.setLong(2, loanId);
+                returned = statement.executeUpdate() > 0;
+            }
+            if (returned && fineCents > 0) {
+                try (PreparedStatement statement = connection.prepareStatement(RETURN_PAYMENT)) {
+                    statement.setLong(1, loanId);
+                    statement.executeUpdate();
+                }
+            }
+            // 有人排队时归还的副本直接留给队首读者，否则放回在架；重复归还不再分配留书，也不产生事件
+            if (returned && open.copyId() != null) {
+                shelveCopies(connection, Map.of(open.bookId(), List.of(open.copyId())));
+            }
+            CirculationResult current = findCirculationResult(connection, loanId);
+            if (returned) {
+                LoanDetail loan = current.loan();
+                emitted.add(new DomainEvent.LoanReturned(loan.id(), loan.bookId(), loan.readerId(), fineCents));
+                emitted.add(new DomainEvent.StockChanged(loan.bookId(), current.availableCopies()));
+                appendOutbox(connection, emitted);
+            }
+            return current;
+        });
+        eventBus.publishAll(emitted);
+        return result;
+    }
+
+    public List<BatchItemResult> borrowBooks(List<BorrowRequest> requests) throws SQLException {
+        List<DomainEvent> emitted = new ArrayList<>();
+        List<BatchItemResult> outcome = inTransaction(connection -> {
+            emitted.clear();
+            Set<Long> changed = new HashSet<>();
+            BatchItemResult[] results = new BatchItemResult[requests.size()];
+            // 读者状况在一条语句内加锁取出，先于其他读取执行
+            Map<Long, ReaderStanding> readers = lockReaderStandings(connection,
+                    requests.stream().map(BorrowRequest::readerId).collect(Collectors.toSet()));
+            Set<Long> books = existingIds(connection, "books",
+                    requests.stream().map(BorrowRequest::bookId).collect(Collectors.toSet()));
+            Map<ReservationKey, ActiveReservation> reservations = lockActiveReservations(connection, books, readers.keySet());
+            BorrowingPolicy current = borrowingPolicy();
+
+            // 先按读者和规则筛选，同一读者在批次中的借阅按顺序计入在借册数；
+            // 再算出每本书需要的在架副本数（留书的读者借走为他保留的副本，同一预约在批次中只用一次），按书一次取齐
+            Map<Long, Integer> pending = new HashMap<>();
+            Map<Long, Integer> demand = new TreeMap<>();
+            Set<ReservationKey> claimed = new HashSet<>();
+            for (int i = 0; i < requests.size(); i++) {
+                BorrowRequest request = requests.get(i);
+                ReaderStanding standing = readers.get(request.readerId());
+                String denied;
+                if (standing == null) {
+                    results[i] = BatchItemResult.failed(i, "读者不存在");
+                } else if ((denied = current.denyBorrow(standing, pending.getOrDefault(request.readerId(), 0))) != null) {
+                    results[i] = BatchItemResult.failed(i, denied);
+                } else if (!books.contains(request.bookId())) {
+                    results[i] = BatchItemResult.failed(i, "图书不存在");
+                } else {
+                    pending.merge(request.readerId(), 1, Integer::sum);
+                    ReservationKey key = new ReservationKey(request.bookId(), request.readerId());
+                    ActiveReservation hold = reservations.get(key);
+                    if (hold == null || !hold.ready() || !claimed.add(key)) {
+                        demand.merge(request.bookId(), 1, Integer::sum);
+                    }
+                }
+            }
+            Map<Long, ArrayDeque<Long>> shelf = new HashMap<>();
+            for (Map.Entry<Long, Integer> entry : demand.entrySet()) {
+                shelf.put(entry.getKey(), new ArrayDeque<>(lockAvailableCopies(connection, entry.getKey(), entry.getValue())));
+            }
+
+            List<Integer> accepted = new ArrayList<>();
+            long[] copyIds = new long[requests.size()];
+            Map<Integer, Long> fulfilled = new HashMap<>();
+            for (int i = 0; i < requests.size(); i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                BorrowRequest request = requests.get(i);
+                ReservationKey key = new ReservationKey(request.bookId(), request.readerId());
+                ActiveReservation hold = reservations.get(key);
+                boolean ready = hold != null && hold.ready();
+                ArrayDeque<Long> copies = shelf.get(request.bookId());
+                if (!ready && (copies == null || copies.isEmpty())) {
+                    results[i] = BatchItemResult.failed(i, "库存不足");
+                } else {
+                    if (ready) {
+                        copyIds[i] = hold.copyId();
+                    } else {
+                        copyIds[i] = copies.poll();
+                        changed.add(request.bookId());
+                    }
+                    if (hold != null) {
+                        reservations.remove(key);
+                        fulfilled.put(i, hold.id());
+                    }
+                    accepted.add(i);
+                }
+            }
+            if (accepted.isEmpty()) {
+                return Arrays.asList(results);
+            }
+            setCopyStatus(connection, accepted.stream().map(i -> copyIds[i]).toList(), BookCopy.Status.ON_LOAN);
+
+            String sql = "INSERT INTO loans (book_id, copy_id, reader_id, borrowed_date, due_date, renewals, fine_paid) " +
+                    "VALUES (?,?,?,CURDATE(),?,0,0)";
+            try (PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                for (int i : accepted) {
+                    BorrowRequest request = requests.get(i);
+                    statement.setLong(1, request.bookId());
+                    statement.setLong(2, copyIds[i]);
+                    statement.setLong(3, request.readerId());
+                    statement.setObject(4, request.dueDate());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (int i : accepted) {
+                        if (!keys.next()) {
+                            throw new SQLException("无法获取借阅 ID");
+                        }
+                        long loanId = keys.getLong(1);
+                        BorrowRequest request = requests.get(i);
+                        results[i] = BatchItemResult.ok(i, loanId);
+                        emitted.add(new DomainEvent.LoanCreated(loanId, request.bookId(), request.readerId(), request.dueDate()));
+                    }
+                }
+            }
+            if (!fulfilled.isEmpty()) {
+                Map<Long, Long> loans = new HashMap<>();
+                fulfilled.forEach((i, reservationId) -> loans.put(reservationId, results[i].id()));
+                fulfillReservations(connection, loans);
+            }
+            appendStock(connection, changed, emitted);
+            appendOutbox(connection, emitted);
+            return Arrays.asList(results);
+        });
+        eventBus.publishAll(emitted);
+        return outcome;
+    }
+
+    public List<BatchItemResult> returnBooks(List<ReturnRequest> requests,
+                                             ToLongBiFunction<LocalDate, LocalDate> fineCalculator) throws SQLException {
+        List<DomainEvent> emitted = new ArrayList<>();
+        List<BatchItemResult> outcome = inTransaction(connection -> {
+            emitted.clear();
+            Set<Long> changed = new HashSet<>();
+            BatchItemResult[] results = new BatchItemResult[requests.size()];
+            Map<Long, OpenLoan> openLoans = lockOpenLoans(connection,
+                    requests.stream().map(ReturnRequest::loanId).collect(Collectors.toSet()));
+
+            List<Long> paid = new ArrayList<>();
+            Map<Long, List<Long>> returnedCopies = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(RETURN_LOAN)) {
+                boolean batched = false;
+                for (int i = 0; i < requests.size(); i++) {
+                    ReturnRequest request = requests.get(i);
+                    // 同一借阅在批次中出现多次时，只有第一次生效
+                    OpenLoan loan = openLoans.remove(request.loanId());
+                    if (loan == null) {
+                        results[i] = BatchItemResult.failed(i, "借阅记录不存在或已归还");
+                        continue;
+                    }
+                    long fineCents = fineCalculator.applyAsLong(loan.dueDate(), request.returnedDate());
+                    if (fineCents > 0) {
+                        paid.add(request.loanId());
+                    }
+                    statement.setLong(1, fineCents);
+                    statement.setLong(2, request.loanId());
+                    statement.addBatch();
+                    batched = true;
+                    changed.add(loan.bookId());
+                    if (loan.copyId() != null) {
+                        returnedCopies.computeIfAbsent(loan.bookId(), k -> new ArrayList<>()).add(loan.copyId());
+                    }
+                    results[i] = BatchItemResult.ok(i, request.loanId());
+                    emitted.add(new DomainEvent.LoanReturned(request.loanId(), loan.bookId(), loan.readerId(), fineCents));
+                }
+                if (batched) {
+                    statement.executeBatch();
+                }
+            }
+            if (!paid.isEmpty()) {
+                try (PreparedStatement statement = connection.prepareStatement(RETURN_PAYMENT)) {
+                    for (long loanId : paid) {
+                        statement.setLong(1, loanId);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+            shelveCopies(connection, returnedCopies);
+            appendStock(connection, changed, emitted);
+            appendOutbox(connection, emitted);
+            return Arrays.asList(results);
+        });
+        eventBus.publishAll(emitted);
+        return outcome;
+    }
+
+    /**
+     * 为暂无在册副本的图书排队预约，副本归还时按预约先后留给排队的读者。
+     * 仍有在册副本时应直接借阅；同一读者对同一本书只能有一个未结束的预约。
+     */
+    public Reservation reserve(long readerId, long bookId) throws SQLException {
+        return inTransaction(connection -> {
+            // 不与还书争锁：检查之后恰好有副本归还、预约仍在排队时，由 expireReservations 补上留书
+            if (!existingIds(connection, "books", Set.of(bookId)).contains(bookId)) {
+                throw new SQLException("图书不存在");
+            }
+            if (countAvailable(connection, Set.of(bookId)).get(bookId) > 0) {
+                throw new SQLException("该图书仍有在册副本，请直接借阅");
+            }
+            String sql = "INSERT INTO reservations (book_id, reader_id, status, expires_at) " +
+                    "VALUES (?,?,'WAITING',NOW() + INTERVAL ? DAY)";
+            try (PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                statement.setLong(1, bookId);
+                statement.setLong(2, readerId);
+                statement.setInt(3, maxWaitDays);
+                try {
+                    statement.executeUpdate();
+                } catch (SQLException e) {
+                    if (e.getErrorCode() == ER_DUP_ENTRY) {
+                        throw new SQLException("该读者已预约此书", e.getSQLState(), e.getErrorCode(), e);
+                    }
+                    if (e.getErrorCode() == ER_NO_REFERENCED_ROW) {
+                        throw new SQLException("读者不存在", e.getSQLState(), e.getErrorCode(), e);
+                    }
+                    throw e;
+                }
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        return findReservation(connection, keys.getLong(1));
+                    }
+                }
+            }
+            throw new SQLException("无法获取预约 ID");
+        });
+    }
+
+    /** 取消未结束的预约；已留书的副本转给下一位排队的读者，没有人排队时放回在架。 */
+    public Reservation cancelReservation(long reservationId) throws SQLException {
+        List<DomainEvent> emitted = new ArrayList<>();
+        Reservation cancelled = inTransaction(connection -> {
+            emitted.clear();
+            String sql = "SELECT book_id, status, copy_id FROM reservations WHERE id = ? FOR UPDATE";
+            long bookId;
+            String status;
+            Long copyId;
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, reservationId);
+                ResultSet rs = statement.executeQuery();
+                if (!rs.next()) {
+                    throw new SQLException("预约不存在");
+                }
+                bookId = rs.getLong("book_id");
+                status = rs.getString("status");
+                copyId = rs.getObject("copy_id", Long.class);
+            }
+            if (!status.equals("WAITING") && !status.equals("READY")) {
+                throw new SQLException("预约已结束");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE reservations SET status = 'CANCELLED' WHERE id = ?")) {
+                statement.setLong(1, reservationId);
+                statement.executeUpdate();
+            }
+            if (copyId != null) {
+                releaseHolds(connection, Map.of(bookId, List.of(copyId)), emitted);
+            }
+            appendOutbox(connection, emitted);
+            return findReservation(connection, reservationId);
+        });
+        eventBus.publishAll(emitted);
+        return cancelled;
+    }
+
+    /**
+     * 清理一批过期预约：取书期限已过的留书转给下一位读者或放回在架，排队超过期限的预约结束。
+     * 同时为有在架副本（如追加副本）却仍在排队的读者留书。多个终端同时清理时用 SKIP LOCKED 各取不同的行。
+     */
+    public ReservationSweep expireReservations(int limit) throws SQLException {
+        List<DomainEvent> emitted = new ArrayList<>();
+        ReservationSweep sweep = inTransaction(connection -> {
+            emitted.clear();
+            List<Long> expired = new ArrayList<>();
+            Map<Long, List<Long>> released = new TreeMap<>();
+            int expiredHolds = 0;
+            int expiredWaits = 0;
+            String sql = "SELECT id, book_id, status, copy_id FROM reservations " +
+                    "WHERE status IN ('WAITING', 'READY') AND expires_at < NOW() LIMIT ? FOR UPDATE SKIP LOCKED";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, checkLimit(limit));
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    expired.add(rs.getLong("id"));
+                    if (rs.getString("status").equals("READY")) {
+                        expiredHolds++;
+                        Long copyId = rs.getObject("copy_id", Long.class);
+                        if (copyId != null) {
+                            released.computeIfAbsent(rs.getLong("book_id"), k -> new ArrayList<>()).add(copyId);
+                        }
+                    } else {
+                        expiredWaits++;
+                    }
+                }
+            }
+            for (List<Long> chunk : chunks(expired)) {
+                String update = "UPDATE reservations SET status = 'EXPIRED' WHERE id IN (" + placeholders(chunk.size()) + ")";
+                try (PreparedStatement statement = connection.prepareStatement(update)) {
+                    bind(statement, chunk);
+                    statement.executeUpdate();
+                }
+            }
+            int reassigned = releaseHolds(connection, released, emitted);
+
+            String backlog = "SELECT c.id, c.book_id FROM book_copies c " +
+                    "JOIN (SELECT DISTINCT book_id FROM reservations WHERE status = 'WAITING') w ON w.book_id = c.book_id " +
+                    "WHERE c.status = 'AVAILABLE' ORDER BY c.id LIMIT ? FOR UPDATE OF c SKIP LOCKED";
+            Map<Long, List<Long>> available = new TreeMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(backlog)) {
+                statement.setInt(1, checkLimit(limit));
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    available.computeIfAbsent(rs.getLong("book_id"), k -> new ArrayList<>()).add(rs.getLong("id"));
+                }
+            }
+            // 没有分到读者的副本原样留在架上，只为有留书的图书发事件
+            Map<Long, Integer> held = shelveCopies(connection, available);
+            reassigned += held.values().stream().mapToInt(Integer::intValue).sum();
+            appendStock(connection, held.keySet(), emitted);
+            appendOutbox(connection, emitted);
+            return new ReservationSweep(expiredHolds, expiredWaits, reassigned);
+        });
+        eventBus.publishAll(emitted);
+        return sweep;
+    }
+
+    /** 读者未结束的预约，排队中的附带队列位置。 */
+    public List<Reservation> findReservationsByReader(long readerId) throws SQLException {
+        return queryReservations(RESERVATION_SELECT + " WHERE v.reader_id = ? AND v.status IN ('WAITING', 'READY') ORDER BY v.id",
+                readerId);
+    }
+
+    /** 图书的留书和排队队列，按预约先后排列。 */
+    public List<Reservation> findReservationQueue(long bookId) throws SQLException {
+        return queryReservations(RESERVATION_SELECT + " WHERE v.book_id = ? AND v.status IN ('WAITING', 'READY') " +
+                "ORDER BY v.status = 'WAITING', v.id", bookId);
+    }
+
+    /** 按扫到的条码查副本，走唯一索引。 */
+    public Optional<BookCopy> findCopyByBarcode(String barcode) throws SQLException {
+        return findOne(COPY_SELECT + " WHERE barcode = ?", barcode, LibraryRepository::mapCopy);
+    }
+
+    /** 图书的全部副本（含已剔旧的），按 id 排列。 */
+    public List<BookCopy> listCopies(long bookId) throws SQLException {
+        List<BookCopy> copies = new ArrayList<>();
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(COPY_SELECT + " WHERE book_id = ? ORDER BY id")) {
+            statement.setLong(1, bookId);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                copies.add(mapCopy(rs));
+            }
         }
+        return copies;
+    }
+
+    /** 登记一个贴好条码的新副本，总册数加一；有读者排队时新副本直接留给队首。 */
+    public BookCopy addCopy(long bookId, String barcode, String location) throws SQLException {
+        List<DomainEvent> emitted = new ArrayList<>();
+        BookCopy added = inTransaction(connection -> {
+            emitted.clear();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE books SET total_copies = total_copies + 1 WHERE id = ?")) {
+                statement.setLong(1, bookId);
+                if (statement.executeUpdate() == 0) {
+                    throw new SQLException("图书不存在");
+                }
+            }
+            long copyId;
+            String sql = "INSERT INTO book_copies (book_id, barcode, location) VALUES (?,?,?)";
+            try (PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                statement.setLong(1, bookId);
+                statement.setString(2, barcode);
+                statement.setString(3, location);
+                try {
+                    statement.executeUpdate();
+                } catch (SQLException e) {
+                    if (e.getErrorCode() == ER_DUP_ENTRY) {
+                        throw new SQLException("条码已存在: " + barcode, e.getSQLState(), e.getErrorCode(), e);
+                    }
+                    throw e;
+                }
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("无法获取副本 ID");
+                    }
+                    copyId = keys.getLong(1);
+                }
+            }
+            if (shelveCopies(connection, Map.of(bookId, List.of(copyId))).isEmpty()) {
+                appendStock(connection, Set.of(bookId), emitted);
+            }
+            appendOutbox(connection, emitted);
+            try (PreparedStatement statement = connection.prepareStatement(COPY_SELECT + " WHERE id = ?")) {
+                statement.setLong(1, copyId);
+                ResultSet rs = statement.executeQuery();
+                rs.next();
+                return mapCopy(rs);
+            }
+        });
+        eventBus.publishAll(emitted);
+        return added;
+    }
+
+    /** 当前生效的借阅规则；首次调用时从 borrowing_policy 载入。 */
+    public BorrowingPolicy borrowingPolicy() throws SQLException {
+        BorrowingPolicy current = policy;
+        return current != null ? current : reloadPolicy();
     }
 
-    public void returnBook(long loanId, double finePaid) throws SQLException {
-        String sql = "UPDATE loans SET returned_date=CURDATE(), fine_paid=? WHERE id=?";
+    /** 从 borrowing_policy 重新载入借阅规则，之后的借阅和续借按新规则检查。 */
+    public BorrowingPolicy reloadPolicy() throws SQLException {
         try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(POLICY_SELECT)) {
+            ResultSet rs = statement.executeQuery();
+            if (!rs.next()) {
+                throw new SQLException("未配置借阅规则（borrowing_policy 表为空）");
+            }
+            BorrowingPolicy loaded = new BorrowingPolicy(rs.getInt("max_loans"), rs.getLong("max_fine_cents"),
+                    rs.getInt("max_renewals"), rs.getBoolean("check_card_expiry"));
+            policy = loaded;
+            return loaded;
+        }
+    }
+
+    /** 修改借阅规则，本实例立即生效，其他终端在下次载入时生效。 */
+    public void updatePolicy(BorrowingPolicy updated) throws SQLException {
+        String sql = "UPDATE borrowing_policy SET max_loans = ?, max_fine = ? / 100, max_renewals = ?, check_card_expiry = ? " +
+                "WHERE id = 1";
+        inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setInt(1, updated.maxLoans());
+                statement.setLong(2, updated.maxFineCents());
+                statement.setInt(3, updated.maxRenewals());
+                statement.setBoolean(4, updated.checkCardExpiry());
+                if (statement.executeUpdate() == 0) {
+                    throw new SQLException("未配置借阅规则（borrowing_policy 表为空）");
+                }
+            }
+            return null;
+        });
+        policy = updated;
+    }
+
+    /** 不加锁读取读者的借阅资格状况，用于借阅前提示；借阅时在事务内重新加锁检查。 */
+    public Optional<ReaderStanding> findReaderStanding(long readerId) throws SQLException {
+        return findOne(READER_STANDING + " WHERE r.id = ?", readerId, LibraryRepository::mapStanding);
+    }
+
+    /**
+     * 批量记录缴款并在同一事务内扣减读者的未缴罚金。缴款金额必须为正且不超过读者当前余额，
+     * 不满足的条目逐条返回失败原因，其余照常入账；成功条目的 id 为收款记录 ID。
+     * 指定借阅的缴款记到该借阅的预缴罚金上，不能超过它未缴的计提罚金；未指定借阅的缴款按到期日
+     * 从早到晚记到读者未归还借阅上，超出部分抵扣与借阅无关的欠款。
+     */
+    public List<BatchItemResult> recordPayments(List<PaymentRequest> payments) throws SQLException {
+        return inTransaction(connection -> {
+            BatchItemResult[] results = new BatchItemResult[payments.size()];
+            Map<Long, Long> balances = lockReaderBalances(connection,
+                    payments.stream().map(PaymentRequest::readerId).collect(Collectors.toSet()));
+            Map<Long, Map<Long, Long>> unpaidFines = lockUnpaidFines(connection, balances.keySet());
+
+            List<Integer> accepted = new ArrayList<>();
+            Map<Long, Long> deducted = new HashMap<>();
+            Map<Long, Long> prepaid = new HashMap<>();
+            for (int i = 0; i < payments.size(); i++) {
+                PaymentRequest payment = payments.get(i);
+                Long balance = balances.get(payment.readerId());
+                Map<Long, Long> unpaid = unpaidFines.getOrDefault(payment.readerId(), Map.of());
+                if (payment.amountCents() <= 0) {
+                    results[i] = BatchItemResult.failed(i, "缴款金额必须大于 0");
+                } else if (balance == null) {
+                    results[i] = BatchItemResult.failed(i, "读者不存在");
+                } else if (payment.amountCents() > balance) {
+                    results[i] = BatchItemResult.failed(i, "缴款金额超过未缴罚金");
+                } else if (payment.loanId() != null && !unpaid.containsKey(payment.loanId())) {
+                    results[i] = BatchItemResult.failed(i, "该借阅没有未缴的逾期罚金");
+                } else if (payment.loanId() != null && payment.amountCents() > unpaid.get(payment.loanId())) {
+                    results[i] = BatchItemResult.failed(i, "缴款金额超过该借阅未缴罚金");
+                } else {
+                    long remaining = payment.amountCents();
+                    for (Map.Entry<Long, Long> fine : unpaid.entrySet()) {
+                        if (remaining == 0) {
+                            break;
+                        }
+                        if (payment.loanId() != null && !payment.loanId().equals(fine.getKey())) {
+                            continue;
+                        }
+                        long applied = Math.min(remaining, fine.getValue());
+                        fine.setValue(fine.getValue() - applied);
+                        prepaid.merge(fine.getKey(), applied, Long::sum);
+                        remaining -= applied;
+                    }
+                    balances.put(payment.readerId(), balance - payment.amountCents());
+                    deducted.merge(payment.readerId(), payment.amountCents(), Long::sum);
+                    accepted.add(i);
+                }
+            }
+            if (accepted.isEmpty()) {
+                return Arrays.asList(results);
+            }
+
+            String sql = "INSERT INTO payments (reader_id, loan_id, amount) VALUES (?,?,? / 100)";
+            try (PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                for (int i : accepted) {
+                    PaymentRequest payment = payments.get(i);
+                    statement.setLong(1, payment.readerId());
+                    statement.setObject(2, payment.loanId());
+                    statement.setLong(3, payment.amountCents());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (int i : accepted) {
+                        if (!keys.next()) {
+                            throw new SQLException("无法获取收款记录 ID");
+                        }
+                        results[i] = BatchItemResult.ok(i, keys.getLong(1));
+                    }
+                }
+            }
+
+            String deduct = "UPDATE readers SET outstanding_fine = outstanding_fine - ? / 100 WHERE id = ?";
+            try (PreparedStatement statement = connection.prepareStatement(deduct)) {
+                for (Map.Entry<Long, Long> entry : deducted.entrySet()) {
+                    statement.setLong(1, entry.getValue());
+                    statement.setLong(2, entry.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            if (!prepaid.isEmpty()) {
+                String apply = "UPDATE loans SET fine_prepaid = fine_prepaid + ? / 100 WHERE id = ?";
+                try (PreparedStatement statement = connection.prepareStatement(apply)) {
+                    for (Map.Entry<Long, Long> entry : prepaid.entrySet()) {
+                        statement.setLong(1, entry.getValue());
+                        statement.setLong(2, entry.getKey());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    /**
+     * 计提 id 在 [fromReaderId, toReaderId) 内读者截至 asOf 的逾期罚金。只改写罚金有变化的借阅，
+     * 读者余额按差额增减，两者在同一事务内完成。
+     */
+    public FineAccrual accrueFines(long fromReaderId, long toReaderId, LocalDate asOf, long dailyFineCents) throws SQLException {
+        // 分除以 100 是精确的 DECIMAL 运算，计提结果与列值可以精确比较；两条语句的参数顺序相同
+        List<Object> params = List.of(asOf, dailyFineCents, fromReaderId, toReaderId, asOf, asOf, dailyFineCents);
+        return inTransaction(connection -> {
+            int readers;
+            String adjust = "UPDATE readers r JOIN (SELECT l.reader_id, SUM(" + ACCRUED_FINE + " - l.accrued_fine) AS delta " +
+                    "FROM loans l WHERE " + FINE_CHANGED + " GROUP BY l.reader_id) d ON d.reader_id = r.id " +
+                    "SET r.outstanding_fine = r.outstanding_fine + d.delta";
+            try (PreparedStatement statement = connection.prepareStatement(adjust)) {
+                bind(statement, params);
+                readers = statement.executeUpdate();
+            }
+            String accrue = "UPDATE loans l SET l.accrued_fine = " + ACCRUED_FINE + " WHERE " + FINE_CHANGED;
+            try (PreparedStatement statement = connection.prepareStatement(accrue)) {
+                bind(statement, params);
+                return new FineAccrual(statement.executeUpdate(), readers);
+            }
+        });
+    }
+
+    /** 截至 asOf 仍未归还且已逾期的借阅，按读者、到期日排序。 */
+    public List<OverdueLoan> findOverdueLoans(long fromReaderId, long toReaderId, LocalDate asOf) throws SQLException {
+        String sql = "SELECT l.id, l.reader_id, r.name AS reader_name, r.card_number, l.book_id, b.title AS book_title, " +
+                "l.due_date, DATEDIFF(?, l.due_date) AS overdue_days, CAST(l.accrued_fine * 100 AS SIGNED) AS accrued_fine_cents FROM loans l " +
+                "JOIN readers r ON r.id = l.reader_id JOIN books b ON b.id = l.book_id " +
+                "WHERE l.returned_date IS NULL AND l.reader_id >= ? AND l.reader_id < ? AND l.due_date < ? " +
+                "ORDER BY l.reader_id, l.due_date, l.id";
+        List<OverdueLoan> loans = new ArrayList<>();
+        try (Connection connection = reads.read().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setDouble(1, finePaid);
-            statement.setLong(2, loanId);
-            statement.executeUpdate();
+            bind(statement, List.of(asOf, fromReaderId, toReaderId, asOf));
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                loans.add(new OverdueLoan(
+                        rs.getLong("id"),
+                        rs.getLong("reader_id"),
+                        rs.getString("reader_name"),
+                        rs.getString("card_number"),
+                        rs.getLong("book_id"),
+                        rs.getString("book_title"),
+                        rs.getObject("due_date", LocalDate.class),
+                        rs.getInt("overdue_days"),
+                        rs.getLong("accrued_fine_cents")
+                ));
+            }
+        }
+        return loans;
+    }
+
+    public long maxReaderId() throws SQLException {
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM readers")) {
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            return rs.getLong(1);
         }
     }
 
     public List<Loan> findLoansByReader(long readerId) throws SQLException {
-        String sql = "SELECT id, book_id, reader_id, borrowed_date, due_date, returned_date, renewals, fine_paid FROM loans WHERE reader_id = ?";
+        String sql = "SELECT id, book_id, reader_id, borrowed_date, due_date, returned_date, renewals, " +
+                "CAST(fine_paid * 100 AS SIGNED) AS fine_paid_cents FROM loans WHERE reader_id = ? ORDER BY borrowed_date DESC, id DESC";
         List<Loan> loans = new ArrayList<>();
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = reads.read().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.setLong(1, readerId);
             ResultSet rs = statement.executeQuery();
@@ -103,19 +1006,98 @@ public class LibraryRepository {
                         rs.getObject("due_date", LocalDate.class),
                         rs.getObject("returned_date", LocalDate.class),
                         rs.getInt("renewals"),
-                        rs.getDouble("fine_paid")
+                        rs.getLong("fine_paid_cents")
                 ));
             }
         }
         return loans;
     }
 
+    /**
+     * 按借出日从新到旧流式读取一位读者的借阅历史，等价于存储过程 get_reader_loans，
+     * 走 (reader_id, borrowed_date, id) 索引，结果不在堆中缓冲。返回读取的行数。
+     */
+    public int forEachReaderLoan(long readerId, Consumer<? super LoanDetail> consumer) throws SQLException {
+        return stream(LOAN_DETAIL_SELECT + " WHERE l.reader_id = ? ORDER BY l.borrowed_date DESC, l.id DESC",
+                List.of(readerId), LibraryRepository::mapLoanDetail, consumer);
+    }
+
+    /**
+     * 所有读者的借阅历史，按读者 id 从大到小分组、组内按借出日从新到旧，用于整库导出。
+     * 三列同为降序，可以反向扫描 (reader_id, borrowed_date, id) 索引，不必在服务端先排序整张表。
+     */
+    public int forEachReaderLoan(Consumer<? super LoanDetail> consumer) throws SQLException {
+        return stream(LOAN_DETAIL_SELECT + " ORDER BY l.reader_id DESC, l.borrowed_date DESC, l.id DESC",
+                List.of(), LibraryRepository::mapLoanDetail, consumer);
+    }
+
+    /** 借出日在 [from, to) 内的借阅按借出日从旧到新流式读取；from、to 为 null 表示不限。 */
+    public int forEachLoan(LocalDate from, LocalDate to, Consumer<? super LoanDetail> consumer) throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (from != null) {
+            conditions.add("l.borrowed_date >= ?");
+            params.add(from);
+        }
+        if (to != null) {
+            conditions.add("l.borrowed_date < ?");
+            params.add(to);
+        }
+        return stream(LOAN_DETAIL_SELECT + where(conditions) + " ORDER BY l.borrowed_date, l.id",
+                params, LibraryRepository::mapLoanDetail, consumer);
+    }
+
+    public int forEachBook(Consumer<? super BookDetail> consumer) throws SQLException {
+        return stream(BOOK_DETAIL_SELECT + " ORDER BY b.id", List.of(), LibraryRepository::mapBookDetail, consumer);
+    }
+
+    /**
+     * 按 id 顺序读取 afterId 之后的 outbox 事件，最多 limit 条。读主库：事件要尽快送达其他终端，
+     * 且这是主键范围扫描，代价很小。未知类型（更新版本写入）的事件 event 为 null。
+     */
+    public List<OutboxEntry> readOutbox(long afterId, int limit) throws SQLException {
+        String sql = "SELECT id, event_type, book_id, loan_id, reader_id, isbn, event_date, amount, origin FROM event_outbox " +
+                "WHERE id > ? ORDER BY id LIMIT ?";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, afterId);
+            statement.setInt(2, checkLimit(limit));
+            ResultSet rs = statement.executeQuery();
+            List<OutboxEntry> entries = new ArrayList<>();
+            while (rs.next()) {
+                entries.add(mapOutboxEntry(rs));
+            }
+            return entries;
+        }
+    }
+
+    public long latestOutboxId() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM event_outbox")) {
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /** 删除 before 之前写入的 outbox 事件，每次最多 limit 行，返回删除的行数。 */
+    public int purgeOutbox(LocalDateTime before, int limit) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM event_outbox WHERE created_at < ? ORDER BY created_at LIMIT ?")) {
+            statement.setObject(1, before);
+            statement.setInt(2, limit);
+            return statement.executeUpdate();
+        }
+    }
+
     public long upsertCategory(String name) throws SQLException {
         String sql = "INSERT INTO categories(name) VALUES (?) ON DUPLICATE KEY UPDATE id=LAST_INSERT_ID(id)";
         try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, name);
             statement.executeUpdate();
+            reads.wrote();
             try (ResultSet keys = statement.getGeneratedKeys()) {
                 if (keys.next()) {
                     return keys.getLong(1);
@@ -131,6 +1113,7 @@ public class LibraryRepository {
              PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
             statement.setString(1, name);
             statement.executeUpdate();
+            reads.wrote();
             try (ResultSet keys = statement.getGeneratedKeys()) {
                 if (keys.next()) {
                     return keys.getLong(1);
@@ -143,7 +1126,7 @@ public class LibraryRepository {
     public List<Category> listCategories() throws SQLException {
         String sql = "SELECT id, name FROM categories ORDER BY name";
         List<Category> categories = new ArrayList<>();
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = reads.read().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
@@ -156,7 +1139,7 @@ public class LibraryRepository {
     public List<Publisher> listPublishers() throws SQLException {
         String sql = "SELECT id, name FROM publishers ORDER BY name";
         List<Publisher> publishers = new ArrayList<>();
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = reads.read().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
@@ -167,73 +1150,988 @@ public class LibraryRepository {
     }
 
     public List<BookDetail> listBooks() throws SQLException {
-        String sql = "SELECT b.id, b.isbn, b.title, b.category_id, c.name AS category_name, b.publisher_id, p.name AS publisher_name, " +
-                "b.published_date, b.total_copies, b.available_copies " +
-                "FROM books b JOIN categories c ON c.id = b.category_id JOIN publishers p ON p.id = b.publisher_id ORDER BY b.id DESC";
+        String sql = BOOK_DETAIL_SELECT + " ORDER BY b.id DESC";
         List<BookDetail> books = new ArrayList<>();
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = reads.read().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
-                books.add(new BookDetail(
-                        rs.getLong("id"),
-                        rs.getString("isbn"),
-                        rs.getString("title"),
-                        rs.getLong("category_id"),
-                        rs.getString("category_name"),
-                        rs.getLong("publisher_id"),
-                        rs.getString("publisher_name"),
-                        rs.getObject("published_date", LocalDate.class),
-                        rs.getInt("total_copies"),
-                        rs.getInt("available_copies")
-                ));
+                books.add(mapBookDetail(rs));
             }
         }
         return books;
     }
 
     public List<Reader> listReaders() throws SQLException {
-        String sql = "SELECT id, name, card_number, card_expiry, outstanding_fine FROM readers ORDER BY id DESC";
+        String sql = READER_SELECT + " ORDER BY r.id DESC";
         List<Reader> readers = new ArrayList<>();
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = reads.read().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
-                readers.add(new Reader(
-                        rs.getLong("id"),
-                        rs.getString("name"),
-                        rs.getString("card_number"),
-                        rs.getObject("card_expiry", LocalDate.class),
-                        rs.getDouble("outstanding_fine")
-                ));
+                readers.add(mapReader(rs));
             }
         }
         return readers;
     }
 
     public List<LoanDetail> listLoanDetails() throws SQLException {
-        String sql = "SELECT l.id, l.book_id, b.title AS book_title, l.reader_id, r.name AS reader_name, l.borrowed_date, l.due_date, " +
-                "l.returned_date, l.renewals, l.fine_paid FROM loans l " +
-                "JOIN books b ON b.id = l.book_id JOIN readers r ON r.id = l.reader_id ORDER BY l.borrowed_date DESC, l.id DESC";
+        String sql = LOAN_DETAIL_SELECT + " ORDER BY l.borrowed_date DESC, l.id DESC";
         List<LoanDetail> loans = new ArrayList<>();
-        try (Connection connection = dataSource.getConnection();
+        try (Connection connection = reads.read().getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
-                loans.add(new LoanDetail(
-                        rs.getLong("id"),
-                        rs.getLong("book_id"),
-                        rs.getString("book_title"),
-                        rs.getLong("reader_id"),
-                        rs.getString("reader_name"),
-                        rs.getObject("borrowed_date", LocalDate.class),
-                        rs.getObject("due_date", LocalDate.class),
-                        rs.getObject("returned_date", LocalDate.class),
-                        rs.getInt("renewals"),
-                        rs.getDouble("fine_paid")
-                ));
+                loans.add(mapLoanDetail(rs));
             }
         }
         return loans;
     }
+
+    public Optional<BookDetail> findBookById(long id) throws SQLException {
+        return findOne(BOOK_DETAIL_SELECT + " WHERE b.id = ?", id, LibraryRepository::mapBookDetail);
+    }
+
+    public Optional<BookDetail> findBookByIsbn(String isbn) throws SQLException {
+        return findOne(BOOK_DETAIL_SELECT + " WHERE b.isbn = ?", isbn, LibraryRepository::mapBookDetail);
+    }
+
+    public Optional<Reader> findReaderById(long id) throws SQLException {
+        return findOne(READER_SELECT + " WHERE r.id = ?", id, LibraryRepository::mapReader);
+    }
+
+    public Optional<Reader> findReaderByCardNumber(String cardNumber) throws SQLException {
+        return findOne(READER_SELECT + " WHERE r.card_number = ?", cardNumber, LibraryRepository::mapReader);
+    }
+
+    public Optional<LoanDetail> findLoanById(long id) throws SQLException {
+        return findOne(LOAN_DETAIL_SELECT + " WHERE l.id = ?", id, LibraryRepository::mapLoanDetail);
+    }
+
+    public Map<Long, BookDetail> findBooksByIds(Collection<Long> ids) throws SQLException {
+        return findByKeys(BOOK_DETAIL_SELECT + " WHERE b.id IN ", ids, LibraryRepository::mapBookDetail, BookDetail::id);
+    }
+
+    public Map<String, BookDetail> findBooksByIsbns(Collection<String> isbns) throws SQLException {
+        return findByKeys(BOOK_DETAIL_SELECT + " WHERE b.isbn IN ", isbns, LibraryRepository::mapBookDetail, BookDetail::isbn);
+    }
+
+    public Map<Long, Reader> findReadersByIds(Collection<Long> ids) throws SQLException {
+        return findByKeys(READER_SELECT + " WHERE r.id IN ", ids, LibraryRepository::mapReader, Reader::id);
+    }
+
+    public Map<Long, LoanDetail> findLoansByIds(Collection<Long> ids) throws SQLException {
+        return findByKeys(LOAN_DETAIL_SELECT + " WHERE l.id IN ", ids, LibraryRepository::mapLoanDetail, LoanDetail::id);
+    }
+
+    /**
+     * 按相关度排序的图书搜索：形如 ISBN 的输入按 ISBN 前缀匹配，其余按书名全文检索（ngram 分词）。
+     * 下一页游标为偏移量。
+     */
+    public Page<BookDetail, Integer> searchBooks(String query, int offset, int limit) throws SQLException {
+        String text = query == null ? "" : query.trim();
+        if (ISBN_PREFIX.matcher(text).matches()) {
+            Page<BookDetail, Integer> page = querySearchPage(BOOK_DETAIL_SELECT + " WHERE b.isbn LIKE ? ORDER BY b.isbn",
+                    List.of(likePrefix(text)), LibraryRepository::mapBookDetail, offset, limit);
+            // 第一页没有命中时可能是以数字开头的书名或姓名，回退到全文检索
+            if (!page.items().isEmpty() || offset > 0) {
+                return page;
+            }
+        }
+        String terms = fulltextTerms(text);
+        if (terms.isEmpty()) {
+            return new Page<>(List.of(), null);
+        }
+        return querySearchPage(BOOK_DETAIL_SELECT + " WHERE MATCH(b.title) AGAINST (? IN BOOLEAN MODE) " +
+                        "ORDER BY MATCH(b.title) AGAINST (? IN BOOLEAN MODE) DESC, b.id DESC",
+                List.of(terms, terms), LibraryRepository::mapBookDetail, offset, limit);
+    }
+
+    /** 形如借书证号的输入按证号前缀匹配，其余按姓名全文检索。 */
+    public Page<Reader, Integer> searchReaders(String query, int offset, int limit) throws SQLException {
+        String text = query == null ? "" : query.trim();
+        if (CARD_PREFIX.matcher(text).matches()) {
+            Page<Reader, Integer> page = querySearchPage(READER_SELECT + " WHERE r.card_number LIKE ? ORDER BY r.card_number",
+                    List.of(likePrefix(text)), LibraryRepository::mapReader, offset, limit);
+            // 第一页没有命中时可能是以数字开头的书名或姓名，回退到全文检索
+            if (!page.items().isEmpty() || offset > 0) {
+                return page;
+            }
+        }
+        String terms = fulltextTerms(text);
+        if (terms.isEmpty()) {
+            return new Page<>(List.of(), null);
+        }
+        return querySearchPage(READER_SELECT + " WHERE MATCH(r.name) AGAINST (? IN BOOLEAN MODE) " +
+                        "ORDER BY MATCH(r.name) AGAINST (? IN BOOLEAN MODE) DESC, r.id DESC",
+                List.of(terms, terms), LibraryRepository::mapReader, offset, limit);
+    }
+
+    public Page<BookDetail, Long> listBooksPage(BookFilter filter, Long afterId, int limit) throws SQLException {
+        return queryBooksPage(filter, afterId, 0, limit);
+    }
+
+    public Page<BookDetail, Long> listBooksAt(BookFilter filter, int offset, int limit) throws SQLException {
+        return queryBooksPage(filter, null, offset, limit);
+    }
+
+    public int countBooks(BookFilter filter) throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        appendBookFilter(filter, conditions, params);
+        return count("SELECT COUNT(*) FROM books b" + where(conditions), params);
+    }
+
+    public Page<Reader, Long> listReadersPage(Long afterId, int limit) throws SQLException {
+        return queryReadersPage(afterId, 0, limit);
+    }
+
+    public Page<Reader, Long> listReadersAt(int offset, int limit) throws SQLException {
+        return queryReadersPage(null, offset, limit);
+    }
+
+    public int countReaders() throws SQLException {
+        return count("SELECT COUNT(*) FROM readers", List.of());
+    }
+
+    public Page<LoanDetail, LoanCursor> listLoanDetailsPage(LoanFilter filter, LoanCursor after, int limit) throws SQLException {
+        return queryLoanDetailsPage(filter, after, 0, limit);
+    }
+
+    public Page<LoanDetail, LoanCursor> listLoanDetailsAt(LoanFilter filter, int offset, int limit) throws SQLException {
+        return queryLoanDetailsPage(filter, null, offset, limit);
+    }
+
+    public int countLoanDetails(LoanFilter filter) throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        appendLoanFilter(filter, conditions, params);
+        String from = filter.categoryId() != null ? " FROM loans l JOIN books b ON b.id = l.book_id" : " FROM loans l";
+        return count("SELECT COUNT(*)" + from + where(conditions), params);
+    }
+
+    private Page<BookDetail, Long> queryBooksPage(BookFilter filter, Long afterId, int offset, int limit) throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        appendBookFilter(filter, conditions, params);
+        if (afterId != null) {
+            conditions.add("b.id < ?");
+            params.add(afterId);
+        }
+        String sql = BOOK_DETAIL_SELECT + where(conditions) + " ORDER BY b.id DESC LIMIT ? OFFSET ?";
+        params.add(checkLimit(limit) + 1);
+        params.add(offset);
+
+        List<BookDetail> books = new ArrayList<>();
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, params);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                books.add(mapBookDetail(rs));
+            }
+        }
+        if (books.size() > limit) {
+            books.remove(limit);
+            return new Page<>(books, books.get(limit - 1).id());
+        }
+        return new Page<>(books, null);
+    }
+
+    private Page<Reader, Long> queryReadersPage(Long afterId, int offset, int limit) throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (afterId != null) {
+            conditions.add("r.id < ?");
+            params.add(afterId);
+        }
+        String sql = READER_SELECT + where(conditions) + " ORDER BY r.id DESC LIMIT ? OFFSET ?";
+        params.add(checkLimit(limit) + 1);
+        params.add(offset);
+
+        List<Reader> readers = new ArrayList<>();
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, params);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                readers.add(mapReader(rs));
+            }
+        }
+        if (readers.size() > limit) {
+            readers.remove(limit);
+            return new Page<>(readers, readers.get(limit - 1).id());
+        }
+        return new Page<>(readers, null);
+    }
+
+    private Page<LoanDetail, LoanCursor> queryLoanDetailsPage(LoanFilter filter, LoanCursor after, int offset, int limit) throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        appendLoanFilter(filter, conditions, params);
+        if (after != null) {
+            // 展开写法，保证 MySQL 能够利用 (borrowed_date, id) 索引做范围扫描
+            conditions.add("(l.borrowed_date < ? OR (l.borrowed_date = ? AND l.id < ?))");
+            params.add(after.borrowedDate());
+            params.add(after.borrowedDate());
+            params.add(after.id());
+        }
+        String sql = LOAN_DETAIL_SELECT + where(conditions) + " ORDER BY l.borrowed_date DESC, l.id DESC LIMIT ? OFFSET ?";
+        params.add(checkLimit(limit) + 1);
+        params.add(offset);
+
+        List<LoanDetail> loans = new ArrayList<>();
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, params);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                loans.add(mapLoanDetail(rs));
+            }
+        }
+        if (loans.size() > limit) {
+            loans.remove(limit);
+            return new Page<>(loans, LoanCursor.of(loans.get(limit - 1)));
+        }
+        return new Page<>(loans, null);
+    }
+
+    // 在一个短事务中执行 work；遇到死锁或锁等待超时时整体回滚，随机退避后重试，最多 MAX_ATTEMPTS 次
+    private <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    T result = work.execute(connection);
+                    connection.commit();
+                    reads.wrote();
+                    return result;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    if (attempt >= MAX_ATTEMPTS || !isRetryable(e)) {
+                        throw e;
+                    }
+                } catch (RuntimeException | Error e) {
+                    // 必须在恢复自动提交之前回滚，否则 setAutoCommit(true) 会提交做了一半的事务
+                    try {
+                        connection.rollback();
+                    } catch (SQLException rollbackFailure) {
+                        e.addSuppressed(rollbackFailure);
+                    }
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(10L << attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("事务重试被中断", e);
+            }
+        }
+    }
+
+    private static boolean isRetryable(SQLException e) {
+        return e.getErrorCode() == ER_LOCK_DEADLOCK || e.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                || "40001".equals(e.getSQLState());
+    }
+
+    @FunctionalInterface
+    private interface TransactionWork<T> {
+        T execute(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private <T> Page<T, Integer> querySearchPage(String sql, List<Object> params, RowMapper<T> mapper,
+                                                 int offset, int limit) throws SQLException {
+        List<Object> bound = new ArrayList<>(params);
+        bound.add(checkLimit(limit) + 1);
+        bound.add(Math.max(0, offset));
+        List<T> rows = new ArrayList<>();
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql + " LIMIT ? OFFSET ?")) {
+            bind(statement, bound);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                rows.add(mapper.map(rs));
+            }
+        }
+        if (rows.size() > limit) {
+            rows.remove(limit);
+            return new Page<>(rows, Math.max(0, offset) + limit);
+        }
+        return new Page<>(rows, null);
+    }
+
+    // 每个词都必须出现：不短于 ngram_token_size（默认 2）的词按短语匹配，单字按前缀匹配；去掉布尔模式的运算符
+    private static String fulltextTerms(String text) {
+        StringBuilder terms = new StringBuilder();
+        for (String word : text.replaceAll("[+\\-<>()~*\"@]", " ").trim().split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (!terms.isEmpty()) {
+                terms.append(' ');
+            }
+            terms.append(word.codePointCount(0, word.length()) >= 2 ? "+\"" + word + "\"" : "+" + word + "*");
+        }
+        return terms.toString();
+    }
+
+    private static String likePrefix(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    // 流式读取，结果不在堆中缓冲。读完之前连接被独占，consumer 不应在这期间长时间阻塞
+    private <T> int stream(String sql, List<?> params, RowMapper<T> mapper, Consumer<? super T> consumer) throws SQLException {
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(streamFetchSize);
+            bind(statement, params);
+            int count = 0;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(mapper.map(rs));
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    // 按主键或唯一键批量查询，每 IN_CHUNK_SIZE 个键一条语句，共用一个连接；不存在的键不出现在结果中
+    private <K extends Comparable<? super K>, T> Map<K, T> findByKeys(String sqlPrefix, Collection<K> keys, RowMapper<T> mapper,
+                                                                      Function<T, K> keyOf) throws SQLException {
+        Map<K, T> found = new HashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            for (List<K> chunk : chunks(keys)) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        sqlPrefix + "(" + placeholders(chunk.size()) + ")")) {
+                    bind(statement, chunk);
+                    ResultSet rs = statement.executeQuery();
+                    while (rs.next()) {
+                        T row = mapper.map(rs);
+                        found.put(keyOf.apply(row), row);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // 按主键或唯一键查询单行，走主库以便写入后立即可见
+    private <T> Optional<T> findOne(String sql, Object key, RowMapper<T> mapper) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setObject(1, key);
+            ResultSet rs = statement.executeQuery();
+            return rs.next() ? Optional.of(mapper.map(rs)) : Optional.empty();
+        }
+    }
+
+    // 变更后在同一连接上回读受影响的借阅行和图书在册数，界面据此只更新这几行
+    private CirculationResult findCirculationResult(Connection connection, long loanId) throws SQLException {
+        String sql = "SELECT l.id, l.book_id, b.title AS book_title, l.reader_id, r.name AS reader_name, l.borrowed_date, " +
+                "l.due_date, l.returned_date, l.renewals, CAST(l.fine_paid * 100 AS SIGNED) AS fine_paid_cents, " +
+                AVAILABLE_COPIES + " AS available_copies FROM loans l " +
+                "JOIN books b ON b.id = l.book_id JOIN readers r ON r.id = l.reader_id WHERE l.id = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, loanId);
+            ResultSet rs = statement.executeQuery();
+            if (rs.next()) {
+                return new CirculationResult(mapLoanDetail(rs), rs.getInt("available_copies"));
+            }
+        }
+        throw new SQLException("未找到对应的借阅记录");
+    }
+
+    /**
+     * 取一本书的若干在架副本并加锁。其他事务正在借出的副本被 SKIP LOCKED 跳过，
+     * 并发借阅同一本书时各自锁定不同的副本行，互不等待；在架副本都被锁住时返回的可能少于 count。
+     */
+    private static List<Long> lockAvailableCopies(Connection connection, long bookId, int count) throws SQLException {
+        List<Long> copies = new ArrayList<>();
+        String sql = "SELECT id FROM book_copies WHERE book_id = ? AND status = 'AVAILABLE' ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, bookId);
+            statement.setInt(2, count);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                copies.add(rs.getLong("id"));
+            }
+        }
+        return copies;
+    }
+
+    // 不加锁统计在架副本数，包含本事务的修改；并发借还同一本书时可能略有滞后。
+    // 事件中的在册数只作提示，订阅方收到 StockChanged 后回读，不按事件先后套用这个值
+    private static Map<Long, Integer> countAvailable(Connection connection, Collection<Long> bookIds) throws SQLException {
+        Map<Long, Integer> available = new HashMap<>();
+        for (List<Long> chunk : chunks(bookIds)) {
+            chunk.forEach(bookId -> available.put(bookId, 0));
+            String sql = "SELECT book_id, COUNT(*) AS available_copies FROM book_copies WHERE status = 'AVAILABLE' " +
+                    "AND book_id IN (" + placeholders(chunk.size()) + ") GROUP BY book_id";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, chunk);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    available.put(rs.getLong("book_id"), rs.getInt("available_copies"));
+                }
+            }
+        }
+        return available;
+    }
+
+    private static void appendStock(Connection connection, Collection<Long> bookIds, List<DomainEvent> emitted) throws SQLException {
+        if (!bookIds.isEmpty()) {
+            countAvailable(connection, bookIds).forEach((bookId, available) ->
+                    emitted.add(new DomainEvent.StockChanged(bookId, available)));
+        }
+    }
+
+    private static void setCopyStatus(Connection connection, Collection<Long> copyIds, BookCopy.Status status) throws SQLException {
+        for (List<Long> chunk : chunks(copyIds)) {
+            String sql = "UPDATE book_copies SET status = ? WHERE id IN (" + placeholders(chunk.size()) + ")";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                List<Object> params = new ArrayList<>();
+                params.add(status.name());
+                params.addAll(chunk);
+                bind(statement, params);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * 按 total_copies 补齐或剔旧图书的副本：少了按序号生成新条码，多了从在架副本中剔旧。
+     * 借出和留书的副本不剔旧，剩余的差额在下次保存该图书时处理。
+     */
+    private static void syncCopies(Connection connection, List<String> isbns) throws SQLException {
+        List<Map.Entry<Long, String>> added = new ArrayList<>();
+        Map<Long, Integer> surplus = new TreeMap<>();
+        for (List<String> chunk : chunks(isbns)) {
+            String sql = "SELECT b.id, b.total_copies, COUNT(c.id) AS copies, COUNT(CASE WHEN c.status <> 'WITHDRAWN' THEN 1 END) AS active " +
+                    "FROM books b LEFT JOIN book_copies c ON c.book_id = b.id WHERE b.isbn IN (" + placeholders(chunk.size()) + ") " +
+                    "GROUP BY b.id, b.total_copies";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, chunk);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    long bookId = rs.getLong("id");
+                    int copies = rs.getInt("copies");
+                    int missing = rs.getInt("total_copies") - rs.getInt("active");
+                    for (int n = 1; n <= missing; n++) {
+                        added.add(Map.entry(bookId, barcode(bookId, copies + n)));
+                    }
+                    if (missing < 0) {
+                        surplus.put(bookId, -missing);
+                    }
+                }
+            }
+        }
+        if (!added.isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO book_copies (book_id, barcode) VALUES (?,?)")) {
+                for (Map.Entry<Long, String> copy : added) {
+                    statement.setLong(1, copy.getKey());
+                    statement.setString(2, copy.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        if (!surplus.isEmpty()) {
+            String sql = "UPDATE book_copies SET status = 'WITHDRAWN' WHERE book_id = ? AND status = 'AVAILABLE' ORDER BY id DESC LIMIT ?";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Map.Entry<Long, Integer> entry : surplus.entrySet()) {
+                    statement.setLong(1, entry.getKey());
+                    statement.setInt(2, entry.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    }
+
+    // 与 V6 迁移生成的条码格式一致：8 位图书 id 加 4 位序号
+    private static String barcode(long bookId, int sequence) {
+        return String.format("%08d-%04d", bookId, sequence);
+    }
+
+    // 借阅事务的第一条语句：锁定读者行并取出资格状况。同一读者的借阅因此串行，并发借阅不会突破在借册数上限
+    private void checkBorrower(Connection connection, long readerId) throws SQLException {
+        ReaderStanding standing = lockReaderStandings(connection, Set.of(readerId)).get(readerId);
+        if (standing == null) {
+            throw new SQLException("读者不存在");
+        }
+        String denied = borrowingPolicy().denyBorrow(standing, 0);
+        if (denied != null) {
+            throw new BorrowingDeniedException(readerId, denied);
+        }
+    }
+
+    /** 借阅事务中锁定 count 位读者并取出借阅资格状况的语句，参数为读者 id；EligibilityBenchmark 直接执行这条语句。 */
+    public static String lockReaderStandingsSql(int count) {
+        return READER_STANDING + " WHERE r.id IN (" + placeholders(count) + ") ORDER BY r.id FOR UPDATE OF r";
+    }
+
+    private static Map<Long, ReaderStanding> lockReaderStandings(Connection connection, Set<Long> readerIds) throws SQLException {
+        Map<Long, ReaderStanding> standings = new HashMap<>();
+        for (List<Long> chunk : chunks(readerIds)) {
+            String sql = lockReaderStandingsSql(chunk.size());
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, chunk);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    ReaderStanding standing = mapStanding(rs);
+                    standings.put(standing.readerId(), standing);
+                }
+            }
+        }
+        return standings;
+    }
+
+    private static Map<Long, Long> lockReaderBalances(Connection connection, Set<Long> readerIds) throws SQLException {
+        Map<Long, Long> balances = new HashMap<>();
+        for (List<Long> chunk : chunks(readerIds)) {
+            String sql = "SELECT id, CAST(outstanding_fine * 100 AS SIGNED) AS outstanding_fine_cents FROM readers " +
+                    "WHERE id IN (" + placeholders(chunk.size()) + ") ORDER BY id FOR UPDATE";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, chunk);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    balances.put(rs.getLong("id"), rs.getLong("outstanding_fine_cents"));
+                }
+            }
+        }
+        return balances;
+    }
+
+    // 读者未归还借阅中未缴的计提罚金（分），按到期日从早到晚排列，走 (returned_date, reader_id, due_date) 索引
+    private static Map<Long, Map<Long, Long>> lockUnpaidFines(Connection connection, Set<Long> readerIds) throws SQLException {
+        Map<Long, Map<Long, Long>> unpaid = new HashMap<>();
+        for (List<Long> chunk : chunks(readerIds)) {
+            String sql = "SELECT id, reader_id, CAST((accrued_fine - fine_prepaid) * 100 AS SIGNED) AS unpaid_cents FROM loans " +
+                    "WHERE returned_date IS NULL AND reader_id IN (" + placeholders(chunk.size()) + ") AND accrued_fine > fine_prepaid " +
+                    "ORDER BY reader_id, due_date, id FOR UPDATE";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, chunk);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    unpaid.computeIfAbsent(rs.getLong("reader_id"), k -> new LinkedHashMap<>())
+                            .put(rs.getLong("id"), rs.getLong("unpaid_cents"));
+                }
+            }
+        }
+        return unpaid;
+    }
+
+    private static Set<Long> existingIds(Connection connection, String table, Set<Long> ids) throws SQLException {
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> chunk : chunks(ids)) {
+            String sql = "SELECT id FROM " + table + " WHERE id IN (" + placeholders(chunk.size()) + ")";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, chunk);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    existing.add(rs.getLong("id"));
+                }
+            }
+        }
+        return existing;
+    }
+
+    private List<Reservation> queryReservations(String sql, long key) throws SQLException {
+        List<Reservation> reservations = new ArrayList<>();
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, key);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                reservations.add(mapReservation(rs));
+            }
+        }
+        return reservations;
+    }
+
+    private Reservation findReservation(Connection connection, long reservationId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(RESERVATION_SELECT + " WHERE v.id = ?")) {
+            statement.setLong(1, reservationId);
+            ResultSet rs = statement.executeQuery();
+            if (rs.next()) {
+                return mapReservation(rs);
+            }
+        }
+        throw new SQLException("预约不存在");
+    }
+
+    private record ReservationKey(long bookId, long readerId) {
+    }
+
+    // copyId 为留书的副本，排队中的预约为 null
+    private record ActiveReservation(long id, Long copyId) {
+        boolean ready() {
+            return copyId != null;
+        }
+    }
+
+    // 按唯一键 (book_id, active_reader_id) 锁定这些读者对这些图书未结束的预约
+    private static Map<ReservationKey, ActiveReservation> lockActiveReservations(Connection connection, Set<Long> bookIds,
+                                                                                 Set<Long> readerIds) throws SQLException {
+        Map<ReservationKey, ActiveReservation> reservations = new HashMap<>();
+        if (readerIds.isEmpty()) {
+            return reservations;
+        }
+        List<Long> readers = readerIds.stream().sorted().toList();
+        for (List<Long> chunk : chunks(bookIds)) {
+            String sql = "SELECT id, book_id, reader_id, copy_id FROM reservations WHERE book_id IN (" + placeholders(chunk.size()) +
+                    ") AND active_reader_id IN (" + placeholders(readers.size()) + ") ORDER BY id FOR UPDATE";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                List<Long> params = new ArrayList<>(chunk);
+                params.addAll(readers);
+                bind(statement, params);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    reservations.put(new ReservationKey(rs.getLong("book_id"), rs.getLong("reader_id")),
+                            new ActiveReservation(rs.getLong("id"), rs.getObject("copy_id", Long.class)));
+                }
+            }
+        }
+        return reservations;
+    }
+
+    private static void fulfillReservations(Connection connection, Map<Long, Long> loanIds) throws SQLException {
+        String sql = "UPDATE reservations SET status = 'FULFILLED', loan_id = ? WHERE id = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Map.Entry<Long, Long> entry : loanIds.entrySet()) {
+                statement.setLong(1, entry.getValue());
+                statement.setLong(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * 把归还或作废留书的副本（按图书分组，已由本事务锁定）按预约先后留给排队的读者，其余放回在架。
+     * 返回每本书留书的册数。队首被其他事务锁定（如正在取消）时用 SKIP LOCKED 跳过，不在这里等待。
+     */
+    private Map<Long, Integer> shelveCopies(Connection connection, Map<Long, List<Long>> copies) throws SQLException {
+        Map<Long, Integer> held = new TreeMap<>();
+        Map<Long, Long> holds = new LinkedHashMap<>();
+        List<Long> shelved = new ArrayList<>();
+        for (Map.Entry<Long, List<Long>> entry : new TreeMap<>(copies).entrySet()) {
+            List<Long> copyIds = entry.getValue().stream().sorted().toList();
+            List<Long> waiting = nextInQueue(connection, entry.getKey(), copyIds.size());
+            for (int i = 0; i < copyIds.size(); i++) {
+                if (i < waiting.size()) {
+                    holds.put(waiting.get(i), copyIds.get(i));
+                } else {
+                    shelved.add(copyIds.get(i));
+                }
+            }
+            if (!waiting.isEmpty()) {
+                held.put(entry.getKey(), waiting.size());
+            }
+        }
+        if (!holds.isEmpty()) {
+            String sql = "UPDATE reservations SET status = 'READY', copy_id = ?, ready_at = NOW(), " +
+                    "expires_at = NOW() + INTERVAL ? DAY WHERE id = ?";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Map.Entry<Long, Long> hold : holds.entrySet()) {
+                    statement.setLong(1, hold.getValue());
+                    statement.setInt(2, holdDays);
+                    statement.setLong(3, hold.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            setCopyStatus(connection, holds.values(), BookCopy.Status.ON_HOLD);
+        }
+        setCopyStatus(connection, shelved, BookCopy.Status.AVAILABLE);
+        return held;
+    }
+
+    // 作废的留书副本先转给队列中的下一位读者，剩余的放回在架
+    private int releaseHolds(Connection connection, Map<Long, List<Long>> copies, List<DomainEvent> emitted) throws SQLException {
+        Map<Long, Integer> held = shelveCopies(connection, copies);
+        Set<Long> restocked = new HashSet<>();
+        copies.forEach((bookId, copyIds) -> {
+            if (held.getOrDefault(bookId, 0) < copyIds.size()) {
+                restocked.add(bookId);
+            }
+        });
+        appendStock(connection, restocked, emitted);
+        return held.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private static List<Long> nextInQueue(Connection connection, long bookId, int count) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        String sql = "SELECT id FROM reservations WHERE book_id = ? AND status = 'WAITING' ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, bookId);
+            statement.setInt(2, count);
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getLong("id"));
+            }
+        }
+        return ids;
+    }
+
+    private record OpenLoan(long bookId, Long copyId, long readerId, LocalDate dueDate) {
+    }
+
+    private static Map<Long, OpenLoan> lockOpenLoans(Connection connection, Set<Long> loanIds) throws SQLException {
+        Map<Long, OpenLoan> openLoans = new HashMap<>();
+        for (List<Long> chunk : chunks(loanIds)) {
+            String sql = "SELECT id, book_id, copy_id, reader_id, due_date FROM loans WHERE returned_date IS NULL AND id IN (" + placeholders(chunk.size()) + ") ORDER BY id FOR UPDATE";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, chunk);
+                ResultSet rs = statement.executeQuery();
+                while (rs.next()) {
+                    openLoans.put(rs.getLong("id"), new OpenLoan(rs.getLong("book_id"), rs.getObject("copy_id", Long.class), rs.getLong("reader_id"),
+                            rs.getObject("due_date", LocalDate.class)));
+                }
+            }
+        }
+        return openLoans;
+    }
+
+    // 去重并排序，加锁的查询按相同顺序取锁
+    private static <K extends Comparable<? super K>> List<List<K>> chunks(Collection<K> keys) {
+        List<K> sorted = keys.stream().distinct().sorted().toList();
+        List<List<K>> chunks = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i += IN_CHUNK_SIZE) {
+            chunks.add(sorted.subList(i, Math.min(sorted.size(), i + IN_CHUNK_SIZE)));
+        }
+        return chunks;
+    }
+
+    private static List<DomainEvent> borrowedEvents(CirculationResult result) {
+        LoanDetail loan = result.loan();
+        return List.of(new DomainEvent.LoanCreated(loan.id(), loan.bookId(), loan.readerId(), loan.dueDate()),
+                new DomainEvent.StockChanged(loan.bookId(), result.availableCopies()));
+    }
+
+    private static List<DomainEvent> renewedEvents(CirculationResult result) {
+        LoanDetail loan = result.loan();
+        return List.of(new DomainEvent.LoanRenewed(loan.id(), loan.bookId(), loan.readerId(), loan.dueDate()));
+    }
+
+    // 与业务修改在同一事务内写入，事务回滚时事件一起撤销；未开启 outbox 时不写
+    private void appendOutbox(Connection connection, List<DomainEvent> events) throws SQLException {
+        if (!outbox || events.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_OUTBOX)) {
+            for (DomainEvent event : events) {
+                bindOutbox(statement, event);
+                statement.setString(8, origin);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static void bindOutbox(PreparedStatement statement, DomainEvent event) throws SQLException {
+        // 各类事件只用到部分列，其余写 NULL
+        statement.setNull(2, Types.BIGINT);
+        statement.setNull(3, Types.BIGINT);
+        statement.setNull(4, Types.BIGINT);
+        statement.setNull(5, Types.VARCHAR);
+        statement.setNull(6, Types.DATE);
+        statement.setNull(7, Types.BIGINT);
+        switch (event) {
+            case DomainEvent.BookAdded e -> {
+                statement.setString(1, "BOOK_ADDED");
+                statement.setString(5, e.isbn());
+            }
+            case DomainEvent.LoanCreated e -> {
+                statement.setString(1, "LOAN_CREATED");
+                bindLoan(statement, e.loanId(), e.bookId(), e.readerId());
+                statement.setObject(6, e.dueDate());
+            }
+            case DomainEvent.LoanRenewed e -> {
+                statement.setString(1, "LOAN_RENEWED");
+                bindLoan(statement, e.loanId(), e.bookId(), e.readerId());
+                statement.setObject(6, e.dueDate());
+            }
+            case DomainEvent.LoanReturned e -> {
+                statement.setString(1, "LOAN_RETURNED");
+                bindLoan(statement, e.loanId(), e.bookId(), e.readerId());
+                statement.setLong(7, e.fineCents());
+            }
+            case DomainEvent.StockChanged e -> {
+                statement.setString(1, "STOCK_CHANGED");
+                statement.setLong(2, e.bookId());
+                statement.setLong(7, e.availableCopies());
+            }
+        }
+    }
+
+    private static void bindLoan(PreparedStatement statement, long loanId, long bookId, long readerId) throws SQLException {
+        statement.setLong(2, bookId);
+        statement.setLong(3, loanId);
+        statement.setLong(4, readerId);
+    }
+
+    private static ReaderStanding mapStanding(ResultSet rs) throws SQLException {
+        return new ReaderStanding(
+                rs.getLong("id"),
+                rs.getBoolean("card_expired"),
+                rs.getLong("outstanding_fine_cents"),
+                rs.getInt("open_loans")
+        );
+    }
+
+    private static BookCopy mapCopy(ResultSet rs) throws SQLException {
+        return new BookCopy(
+                rs.getLong("id"),
+                rs.getLong("book_id"),
+                rs.getString("barcode"),
+                BookCopy.Status.valueOf(rs.getString("status")),
+                rs.getString("location")
+        );
+    }
+
+    private static Reservation mapReservation(ResultSet rs) throws SQLException {
+        return new Reservation(
+                rs.getLong("id"),
+                rs.getLong("book_id"),
+                rs.getString("book_title"),
+                rs.getLong("reader_id"),
+                rs.getString("reader_name"),
+                Reservation.Status.valueOf(rs.getString("status")),
+                rs.getObject("created_at", LocalDateTime.class),
+                rs.getObject("ready_at", LocalDateTime.class),
+                rs.getObject("expires_at", LocalDateTime.class),
+                rs.getInt("queue_position"));
+    }
+
+    private static OutboxEntry mapOutboxEntry(ResultSet rs) throws SQLException {
+        long bookId = rs.getLong("book_id");
+        long loanId = rs.getLong("loan_id");
+        long readerId = rs.getLong("reader_id");
+        long amount = rs.getLong("amount");
+        LocalDate date = rs.getObject("event_date", LocalDate.class);
+        DomainEvent event = switch (rs.getString("event_type")) {
+            case "BOOK_ADDED" -> new DomainEvent.BookAdded(rs.getString("isbn"));
+            case "LOAN_CREATED" -> new DomainEvent.LoanCreated(loanId, bookId, readerId, date);
+            case "LOAN_RENEWED" -> new DomainEvent.LoanRenewed(loanId, bookId, readerId, date);
+            case "LOAN_RETURNED" -> new DomainEvent.LoanReturned(loanId, bookId, readerId, amount);
+            case "STOCK_CHANGED" -> new DomainEvent.StockChanged(bookId, (int) amount);
+            default -> null;
+        };
+        return new OutboxEntry(rs.getLong("id"), rs.getString("origin"), event);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private int count(String sql, List<Object> params) throws SQLException {
+        try (Connection connection = reads.read().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            bind(statement, params);
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void appendBookFilter(BookFilter filter, List<String> conditions, List<Object> params) {
+        if (filter.categoryId() != null) {
+            conditions.add("b.category_id = ?");
+            params.add(filter.categoryId());
+        }
+        if (filter.availableOnly()) {
+            conditions.add("EXISTS (SELECT 1 FROM book_copies bc WHERE bc.book_id = b.id AND bc.status = 'AVAILABLE')");
+        }
+    }
+
+    private static void appendLoanFilter(LoanFilter filter, List<String> conditions, List<Object> params) {
+        if (filter.readerId() != null) {
+            conditions.add("l.reader_id = ?");
+            params.add(filter.readerId());
+        }
+        if (filter.bookId() != null) {
+            conditions.add("l.book_id = ?");
+            params.add(filter.bookId());
+        }
+        if (filter.categoryId() != null) {
+            conditions.add("b.category_id = ?");
+            params.add(filter.categoryId());
+        }
+        if (filter.activeOnly()) {
+            conditions.add("l.returned_date IS NULL");
+        }
+        if (filter.overdueOnly()) {
+            conditions.add("l.due_date < CURDATE()");
+        }
+    }
+
+    private static String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private static int checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("分页大小必须大于 0");
+        }
+        return limit;
+    }
+
+    private static void bind(PreparedStatement statement, List<?> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            statement.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private static BookDetail mapBookDetail(ResultSet rs) throws SQLException {
+        return new BookDetail(
+                rs.getLong("id"),
+                rs.getString("isbn"),
+                rs.getString("title"),
+                rs.getLong("category_id"),
+                rs.getString("category_name"),
+                rs.getLong("publisher_id"),
+                rs.getString("publisher_name"),
+                rs.getObject("published_date", LocalDate.class),
+                rs.getInt("total_copies"),
+                rs.getInt("available_copies")
+        );
+    }
+
+    private static Reader mapReader(ResultSet rs) throws SQLException {
+        return new Reader(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("card_number"),
+                rs.getObject("card_expiry", LocalDate.class),
+                rs.getLong("outstanding_fine_cents")
+        );
+    }
+
+    private static LoanDetail mapLoanDetail(ResultSet rs) throws SQLException {
+        return new LoanDetail(
+                rs.getLong("id"),
+                rs.getLong("book_id"),
+                rs.getString("book_title"),
+                rs.getLong("reader_id"),
+                rs.getString("reader_name"),
+                rs.getObject("borrowed_date", LocalDate.class),
+                rs.getObject("due_date", LocalDate.class),
+                rs.getObject("returned_date", LocalDate.class),
+                rs.getInt("renewals"),
+                rs.getLong("fine_paid_cents")
+        );
+    }
 }
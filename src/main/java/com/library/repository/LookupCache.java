@@ -0,0 +1,107 @@
+package com.library.repository;
+
+import com.library.metrics.MetricsRegistry;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 有容量上限和过期时间的读穿缓存，超出容量时淘汰最久未访问的条目。
+ * 加载在锁外执行；加载期间发生过失效时不写入加载结果，避免把失效前读到的旧值放回缓存。
+ */
+public final class LookupCache<K, V> {
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    public record Stats(String name, long hits, long misses, long evictions, long expirations, int size) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: size=%d hits=%d misses=%d hitRate=%.1f%% evictions=%d expirations=%d",
+                    name, size, hits, misses, hitRate() * 100, evictions, expirations);
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private final String name;
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries;
+
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public LookupCache(String name, int maxSize, Duration ttl) {
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    void registerMetrics(MetricsRegistry metrics) {
+        Map<String, String> labels = Map.of("cache", name);
+        metrics.counter("library_cache_hits_total", "缓存命中次数", labels, () -> stats().hits());
+        metrics.counter("library_cache_misses_total", "缓存未命中次数", labels, () -> stats().misses());
+        metrics.counter("library_cache_evictions_total", "超出容量淘汰的条目数", labels, () -> stats().evictions());
+        metrics.counter("library_cache_expirations_total", "过期移除的条目数", labels, () -> stats().expirations());
+        metrics.gauge("library_cache_size", "缓存条目数", labels, () -> stats().size());
+    }
+
+    public V get(K key, Loader<? super K, ? extends V> loader) throws SQLException {
+        long seen;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt() < 0) {
+                    hits++;
+                    return entry.value();
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            seen = version;
+        }
+        V value = loader.load(key);
+        synchronized (this) {
+            if (version == seen) {
+                entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        version++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        version++;
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(name, hits, misses, evictions, expirations, entries.size());
+    }
+}
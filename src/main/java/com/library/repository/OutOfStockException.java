@@ -0,0 +1,16 @@
+package com.library.repository;
+
+import java.sql.SQLException;
+
+public class OutOfStockException extends SQLException {
+    private final long bookId;
+
+    public OutOfStockException(long bookId) {
+        super("库存不足，图书暂无在册副本");
+        this.bookId = bookId;
+    }
+
+    public long getBookId() {
+        return bookId;
+    }
+}
@@ -0,0 +1,53 @@
+package com.library.repository;
+
+import com.library.config.DatabaseConfig;
+import com.library.config.ReplicaLagMonitor;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 为只读查询选择连接池。一个 {@link LibraryRepository} 实例视为一个会话（一个借还终端）：
+ * 本会话写入后的一段时间内只读查询走主库，保证读到自己的写入；这段时间不短于当前的复制延迟。
+ * 复制延迟超过容忍上限或无法确定时，所有只读查询都走主库。
+ */
+final class ReadRouter {
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaLagMonitor lag;
+    private final long maxLagMillis;
+    private final long stickyMillis;
+    private volatile long lastWriteNanos;
+    private volatile boolean written;
+
+    ReadRouter(DataSource primary, DataSource replica, ReplicaLagMonitor lag, DatabaseConfig config) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lag = lag;
+        this.maxLagMillis = config.readMaxLagMs();
+        this.stickyMillis = config.readStickyMs();
+    }
+
+    DataSource read() {
+        if (replica == primary || lag == null) {
+            return primary;
+        }
+        long lagMillis = lag.lagMillis();
+        if (lagMillis > maxLagMillis) {
+            return primary;
+        }
+        if (written) {
+            long sinceWrite = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastWriteNanos);
+            if (sinceWrite < Math.max(stickyMillis, lagMillis)) {
+                return primary;
+            }
+        }
+        return replica;
+    }
+
+    /** 在写入提交之后调用。 */
+    void wrote() {
+        lastWriteNanos = System.nanoTime();
+        written = true;
+    }
+}
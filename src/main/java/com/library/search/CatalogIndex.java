@@ -0,0 +1,477 @@
+package com.library.search;
+
+import com.library.event.DomainEvent;
+import com.library.model.BookDetail;
+import com.library.model.BookFilter;
+import com.library.model.Page;
+import com.library.repository.LibraryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 图书目录的进程内倒排索引，覆盖书名、ISBN、分类名和出版社名，检索不访问数据库。
+ * 中日韩文字按相邻两字切分，其他文字按字母数字切词，ISBN 去掉连字符后整体作为一个词；
+ * 倒排表是按文档序号升序的 int 数组。
+ * <p>
+ * 查询由空白分隔的词组成，所有词都要命中；以 - 开头的词表示排除，以 * 结尾的词按前缀匹配，
+ * 最后一个词总是按前缀匹配以便边输入边搜索。结果按入库先后倒序，新书在前。
+ * <p>
+ * {@link #rebuild()} 分页流式读取全部图书建立索引；订阅仓库的 {@link com.library.event.EventBus} 后跟随本进程的写入，
+ * 开启 outbox 时也跟随其他终端的写入，变更在后台线程回读。{@link #save}/{@link #load} 把索引写入文件并以内存映射方式读回，
+ * 中心库连接不佳时可以直接用上次保存的索引启动。
+ */
+public final class CatalogIndex implements Consumer<DomainEvent> {
+    private static final Logger log = LoggerFactory.getLogger(CatalogIndex.class);
+
+    private static final int MAGIC = 0x4C43_4958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUILD_PAGE_SIZE = 1000;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final LibraryRepository repository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-index-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 以下字段由 lock 保护
+    private List<BookDetail> docs = new ArrayList<>();
+    private Map<Long, Integer> ordinals = new HashMap<>();
+    private NavigableMap<String, IntList> postings = new TreeMap<>();
+    private boolean ready;
+    private volatile boolean building;
+
+    // 待回读的变更，由 this 保护
+    private final Set<Long> staleIds = new HashSet<>();
+    private final Set<String> staleIsbns = new HashSet<>();
+
+    public CatalogIndex(LibraryRepository repository) {
+        this.repository = repository;
+    }
+
+    /** 从文件载入上次保存的索引；文件只在载入时读取一次。 */
+    public static CatalogIndex load(Path file, LibraryRepository repository) throws IOException {
+        CatalogIndex index = new CatalogIndex(repository);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("不是可识别的目录索引文件: " + file);
+            }
+            int docCount = buffer.getInt();
+            List<BookDetail> docs = new ArrayList<>(docCount);
+            Map<Long, Integer> ordinals = new HashMap<>();
+            for (int i = 0; i < docCount; i++) {
+                BookDetail book = readBook(buffer);
+                ordinals.put(book.id(), docs.size());
+                docs.add(book);
+            }
+            NavigableMap<String, IntList> postings = new TreeMap<>();
+            int termCount = buffer.getInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = readString(buffer);
+                int[] list = new int[buffer.getInt()];
+                buffer.asIntBuffer().get(list);
+                buffer.position(buffer.position() + list.length * Integer.BYTES);
+                postings.put(term, new IntList(list));
+            }
+            index.swap(docs, ordinals, postings);
+        } catch (RuntimeException e) {
+            throw new IOException("目录索引文件已损坏: " + file, e);
+        }
+        return index;
+    }
+
+    /** 重新读取全部图书。构建期间收到的变更在构建完成后回读，不会丢失。 */
+    public void rebuild() throws SQLException {
+        List<BookDetail> docs = new ArrayList<>();
+        Map<Long, Integer> ordinals = new HashMap<>();
+        NavigableMap<String, IntList> postings = new TreeMap<>();
+        Long cursor = null;
+        Page<BookDetail, Long> page;
+        building = true;
+        try {
+            do {
+                page = repository.listBooksPage(BookFilter.all(), cursor, BUILD_PAGE_SIZE);
+                for (BookDetail book : page.items()) {
+                    int ordinal = docs.size();
+                    docs.add(book);
+                    ordinals.put(book.id(), ordinal);
+                    for (String term : terms(book)) {
+                        postings.computeIfAbsent(term, t -> new IntList()).add(ordinal);
+                    }
+                }
+                cursor = page.nextCursor();
+            } while (page.hasMore());
+            swap(docs, ordinals, postings);
+        } finally {
+            building = false;
+        }
+        log.info("目录索引已建立：{} 种图书，{} 个词", docs.size(), postings.size());
+        scheduleRefresh();
+    }
+
+    /** 原子地写入文件：先写临时文件再替换。 */
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(docs.size());
+            for (BookDetail book : docs) {
+                writeBook(out, book);
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+                writeString(out, entry.getKey());
+                IntList list = entry.getValue();
+                out.writeInt(list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    out.writeInt(list.get(i));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 下一页游标为偏移量，与 {@link LibraryRepository#searchBooks} 相同。 */
+    public Page<BookDetail, Integer> search(String query, int offset, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("分页大小必须大于 0");
+        }
+        List<Clause> clauses = parse(query == null ? "" : query);
+        lock.readLock().lock();
+        try {
+            int[] hits = evaluate(clauses);
+            List<BookDetail> items = new ArrayList<>();
+            // 序号大的是后入库的图书，倒序取出
+            for (int i = hits.length - 1 - offset; i >= 0 && items.size() <= limit; i--) {
+                items.add(docs.get(hits[i]));
+            }
+            boolean hasMore = items.size() > limit;
+            return new Page<>(hasMore ? items.subList(0, limit) : items, hasMore ? offset + limit : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 在事件总线的分发线程上调用，变更的图书都在后台线程回读。事件中的在册数可能晚于更新的修改到达，
+    // 不直接套用；回读在单个线程上依次进行，最后一次回读开始于最后一个事件之后
+    @Override
+    public void accept(DomainEvent event) {
+        switch (event) {
+            case DomainEvent.BookAdded e -> markStale(Set.of(), Set.of(e.isbn()));
+            case DomainEvent.StockChanged e -> markStale(Set.of(e.bookId()), Set.of());
+            default -> {
+            }
+        }
+    }
+
+    private void markStale(Collection<Long> bookIds, Collection<String> isbns) {
+        synchronized (this) {
+            staleIds.addAll(bookIds);
+            staleIsbns.addAll(isbns);
+        }
+        scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        refresher.execute(this::refresh);
+    }
+
+    // 回读失败（例如连接中断）时保留待回读的键，下一次变更或重建时再试
+    private void refresh() {
+        Set<Long> ids;
+        Set<String> isbns;
+        synchronized (this) {
+            if (building || staleIds.isEmpty() && staleIsbns.isEmpty()) {
+                return;
+            }
+            ids = new HashSet<>(staleIds);
+            isbns = new HashSet<>(staleIsbns);
+            staleIds.clear();
+            staleIsbns.clear();
+        }
+        try {
+            List<BookDetail> books = new ArrayList<>(repository.findBooksByIds(ids).values());
+            books.addAll(repository.findBooksByIsbns(isbns).values());
+            books.sort(Comparator.comparingLong(BookDetail::id));
+            lock.writeLock().lock();
+            try {
+                books.forEach(this::put);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (SQLException e) {
+            log.warn("目录索引回读变更失败，将在下次变更时重试", e);
+            synchronized (this) {
+                staleIds.addAll(ids);
+                staleIsbns.addAll(isbns);
+            }
+        }
+    }
+
+    private void swap(List<BookDetail> docs, Map<Long, Integer> ordinals, NavigableMap<String, IntList> postings) {
+        lock.writeLock().lock();
+        try {
+            this.docs = docs;
+            this.ordinals = ordinals;
+            this.postings = postings;
+            this.ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 调用方持有写锁
+    private void put(BookDetail book) {
+        Integer existing = ordinals.get(book.id());
+        if (existing == null) {
+            int ordinal = docs.size();
+            docs.add(book);
+            ordinals.put(book.id(), ordinal);
+            for (String term : terms(book)) {
+                postings.computeIfAbsent(term, t -> new IntList()).add(ordinal);
+            }
+            return;
+        }
+        int ordinal = existing;
+        Set<String> before = terms(docs.get(ordinal));
+        Set<String> after = terms(book);
+        for (String term : before) {
+            if (!after.contains(term)) {
+                IntList list = postings.get(term);
+                list.remove(ordinal);
+                if (list.size() == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+        for (String term : after) {
+            if (!before.contains(term)) {
+                postings.computeIfAbsent(term, t -> new IntList()).add(ordinal);
+            }
+        }
+        docs.set(ordinal, book);
+    }
+
+    private static Set<String> terms(BookDetail book) {
+        Set<String> terms = new LinkedHashSet<>();
+        CatalogTokenizer.tokenize(book.title(), terms::add);
+        CatalogTokenizer.tokenize(book.categoryName(), terms::add);
+        CatalogTokenizer.tokenize(book.publisherName(), terms::add);
+        if (book.isbn() != null) {
+            terms.add(CatalogTokenizer.normalizeIsbn(book.isbn()));
+        }
+        return terms;
+    }
+
+    /** 一个查询词切分出的词元都要命中；negated 时排除同时命中这些词元的图书。 */
+    private record Clause(List<String> tokens, List<Boolean> prefixes, boolean negated) {
+    }
+
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        String[] words = query.trim().split("\\s+");
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            boolean negated = word.length() > 1 && word.startsWith("-");
+            if (negated) {
+                word = word.substring(1);
+            }
+            boolean prefix = word.endsWith("*") || w == words.length - 1;
+            List<String> tokens = new ArrayList<>();
+            List<Boolean> prefixes = new ArrayList<>();
+            if (CatalogTokenizer.isIsbnLike(word)) {
+                tokens.add(CatalogTokenizer.normalizeIsbn(word));
+                prefixes.add(true);
+            } else {
+                CatalogTokenizer.tokenize(word, tokens::add);
+                for (int i = 0; i < tokens.size(); i++) {
+                    // 索引里的中文词元是两个字，单个汉字只能按前缀匹配
+                    prefixes.add(CatalogTokenizer.isSingleCjk(tokens.get(i)) || prefix && i == tokens.size() - 1);
+                }
+            }
+            if (!tokens.isEmpty()) {
+                clauses.add(new Clause(tokens, prefixes, negated));
+            }
+        }
+        return clauses;
+    }
+
+    // 调用方持有读锁
+    private int[] evaluate(List<Clause> clauses) {
+        List<int[]> required = new ArrayList<>();
+        List<int[]> excluded = new ArrayList<>();
+        for (Clause clause : clauses) {
+            List<int[]> lists = new ArrayList<>();
+            for (int i = 0; i < clause.tokens().size(); i++) {
+                lists.add(lookup(clause.tokens().get(i), clause.prefixes().get(i)));
+            }
+            if (clause.negated()) {
+                excluded.add(intersect(lists));
+            } else {
+                required.addAll(lists);
+            }
+        }
+        if (required.isEmpty()) {
+            return new int[0];
+        }
+        int[] hits = intersect(required);
+        for (int[] list : excluded) {
+            hits = subtract(hits, list);
+        }
+        return hits;
+    }
+
+    private int[] lookup(String token, boolean prefix) {
+        if (!prefix) {
+            IntList list = postings.get(token);
+            return list == null ? new int[0] : list.toArray();
+        }
+        Collection<IntList> lists = postings.subMap(token, true, token + Character.MAX_VALUE, false).values();
+        if (lists.size() == 1) {
+            return lists.iterator().next().toArray();
+        }
+        BitSet union = new BitSet(docs.size());
+        for (IntList list : lists) {
+            for (int i = 0; i < list.size(); i++) {
+                union.set(list.get(i));
+            }
+        }
+        return union.stream().toArray();
+    }
+
+    // 从最短的倒排表开始求交，中间结果越来越短
+    private static int[] intersect(List<int[]> lists) {
+        List<int[]> sorted = new ArrayList<>(lists);
+        sorted.sort(Comparator.comparingInt(list -> list.length));
+        int[] result = sorted.get(0);
+        for (int k = 1; k < sorted.size() && result.length > 0; k++) {
+            int[] other = sorted.get(k);
+            int[] next = new int[result.length];
+            int n = 0;
+            for (int value : result) {
+                if (Arrays.binarySearch(other, value) >= 0) {
+                    next[n++] = value;
+                }
+            }
+            result = Arrays.copyOf(next, n);
+        }
+        return result;
+    }
+
+    private static int[] subtract(int[] hits, int[] excluded) {
+        int[] result = new int[hits.length];
+        int n = 0;
+        for (int value : hits) {
+            if (Arrays.binarySearch(excluded, value) < 0) {
+                result[n++] = value;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static void writeBook(DataOutputStream out, BookDetail book) throws IOException {
+        out.writeLong(book.id());
+        writeString(out, book.isbn());
+        writeString(out, book.title());
+        out.writeLong(book.categoryId());
+        writeString(out, book.categoryName());
+        out.writeLong(book.publisherId());
+        writeString(out, book.publisherName());
+        out.writeLong(book.publishedDate() == null ? NO_DATE : book.publishedDate().toEpochDay());
+        out.writeInt(book.totalCopies());
+        out.writeInt(book.availableCopies());
+    }
+
+    private static BookDetail readBook(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        String isbn = readString(buffer);
+        String title = readString(buffer);
+        long categoryId = buffer.getLong();
+        String categoryName = readString(buffer);
+        long publisherId = buffer.getLong();
+        String publisherName = readString(buffer);
+        long publishedDay = buffer.getLong();
+        int totalCopies = buffer.getInt();
+        int availableCopies = buffer.getInt();
+        return new BookDetail(id, isbn, title, categoryId, categoryName, publisherId, publisherName,
+                publishedDay == NO_DATE ? null : LocalDate.ofEpochDay(publishedDay), totalCopies, availableCopies);
+    }
+
+    // 长度前缀加 UTF-8 字节；writeUTF 的修改版 UTF-8 不便直接从 ByteBuffer 解码
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
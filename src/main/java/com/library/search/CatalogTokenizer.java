@@ -0,0 +1,76 @@
+package com.library.search;
+
+import java.lang.Character.UnicodeScript;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 中日韩文字按相邻两字切分（单独一个字时保留单字），其余字母数字按连续片段切词并转小写，标点和空白是分隔符。
+ * 与 MySQL ngram 分词器 ngram_token_size=2 的行为一致，索引和查询用同一套规则。
+ */
+final class CatalogTokenizer {
+    private static final Pattern ISBN_LIKE = Pattern.compile("[0-9][0-9Xx-]*");
+
+    private CatalogTokenizer() {
+    }
+
+    static void tokenize(String text, Consumer<String> sink) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int end = i;
+                while (end < length && isCjk(text.codePointAt(end))) {
+                    end += Character.charCount(text.codePointAt(end));
+                }
+                bigrams(text.substring(i, end), sink);
+                i = end;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int end = i;
+                while (end < length && Character.isLetterOrDigit(text.codePointAt(end)) && !isCjk(text.codePointAt(end))) {
+                    end += Character.charCount(text.codePointAt(end));
+                }
+                sink.accept(text.substring(i, end).toLowerCase(Locale.ROOT));
+                i = end;
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+    }
+
+    /** 形如 ISBN 的输入（数字开头，只含数字、X 和连字符）。 */
+    static boolean isIsbnLike(String text) {
+        return ISBN_LIKE.matcher(text).matches();
+    }
+
+    /** ISBN 去掉连字符后整体作为一个词，按前缀查询时不受分段方式影响。 */
+    static String normalizeIsbn(String isbn) {
+        return isbn.replace("-", "").replace(" ", "").toLowerCase(Locale.ROOT);
+    }
+
+    static boolean isSingleCjk(String token) {
+        return token.codePointCount(0, token.length()) == 1 && isCjk(token.codePointAt(0));
+    }
+
+    private static void bigrams(String run, Consumer<String> sink) {
+        int[] codePoints = run.codePoints().toArray();
+        if (codePoints.length == 1) {
+            sink.accept(run);
+            return;
+        }
+        for (int k = 0; k + 1 < codePoints.length; k++) {
+            sink.accept(new String(codePoints, k, 2));
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        UnicodeScript script = UnicodeScript.of(codePoint);
+        return script == UnicodeScript.HAN || script == UnicodeScript.HIRAGANA
+                || script == UnicodeScript.KATAKANA || script == UnicodeScript.HANGUL;
+    }
+}
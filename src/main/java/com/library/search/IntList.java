@@ -0,0 +1,64 @@
+package com.library.search;
+
+import java.util.Arrays;
+
+/** 升序、不重复的 int 列表，用作倒排表，避免装箱。 */
+final class IntList {
+    private int[] values;
+    private int size;
+
+    IntList() {
+        this.values = new int[4];
+    }
+
+    IntList(int[] values) {
+        this.values = values;
+        this.size = values.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    /** 新文档的序号最大，通常直接追加到末尾。 */
+    void add(int value) {
+        if (size > 0 && values[size - 1] >= value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return;
+            }
+            insert(-index - 1, value);
+            return;
+        }
+        insert(size, value);
+    }
+
+    void remove(int value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+    }
+
+    boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    private void insert(int index, int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+    }
+}
@@ -0,0 +1,161 @@
+package com.library.service;
+
+import javax.swing.SwingUtilities;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 在虚拟线程上执行 {@link LibraryService} 调用，避免 JDBC 阻塞 Swing 的事件分派线程。
+ * 取消返回的 future 会中断正在执行的调用；同一个 key 的刷新请求在执行期间会被合并为一次后续刷新。
+ */
+public class AsyncLibraryService implements AutoCloseable {
+    @FunctionalInterface
+    public interface Call<T> {
+        T call(LibraryService service) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        void run(LibraryService service) throws Exception;
+    }
+
+    private final LibraryService service;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Coalescer> reloads = new HashMap<>();
+
+    public AsyncLibraryService(LibraryService service) {
+        this.service = service;
+    }
+
+    public LibraryService service() {
+        return service;
+    }
+
+    public Executor executor() {
+        return executor;
+    }
+
+    public <T> CompletableFuture<T> submit(Call<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                result.complete(call.call(service));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Void> execute(Task task) {
+        return submit(service -> {
+            task.run(service);
+            return null;
+        });
+    }
+
+    /**
+     * 同一 key 同时只执行一次；执行期间到达的请求共享一次紧随其后的刷新，
+     * 保证调用方拿到的是请求发起之后的数据。返回的 future 被取消不会影响其他调用方。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> reload(String key, Call<T> call) {
+        synchronized (reloads) {
+            Coalescer slot = reloads.computeIfAbsent(key, k -> new Coalescer());
+            if (slot.running == null) {
+                return (CompletableFuture<T>) start(slot, call).copy();
+            }
+            if (slot.pending == null) {
+                slot.pending = new CompletableFuture<>();
+            }
+            slot.pendingCall = call;
+            return (CompletableFuture<T>) slot.pending.copy();
+        }
+    }
+
+    public <T> CompletableFuture<Void> onEdt(CompletableFuture<T> future, Consumer<? super T> onSuccess,
+                                             Consumer<Throwable> onFailure) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        future.whenComplete((value, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                if (!(cause instanceof CancellationException)) {
+                    onFailure.accept(cause);
+                }
+                done.completeExceptionally(cause);
+                return;
+            }
+            try {
+                onSuccess.accept(value);
+                done.complete(null);
+            } catch (RuntimeException e) {
+                onFailure.accept(e);
+                done.completeExceptionally(e);
+            }
+        }));
+        return done;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<Object> start(Coalescer slot, Call<?> call) {
+        CompletableFuture<Object> future = submit(call::call);
+        slot.running = future;
+        future.whenComplete((value, error) -> next(slot, future));
+        return future;
+    }
+
+    private void next(Coalescer slot, CompletableFuture<Object> finished) {
+        synchronized (reloads) {
+            if (slot.running != finished) {
+                return;
+            }
+            if (slot.pending == null) {
+                slot.running = null;
+                return;
+            }
+            CompletableFuture<Object> waiting = slot.pending;
+            Call<?> call = slot.pendingCall;
+            slot.pending = null;
+            slot.pendingCall = null;
+            start(slot, call).whenComplete((value, error) -> {
+                if (error != null) {
+                    waiting.completeExceptionally(unwrap(error));
+                } else {
+                    waiting.complete(value);
+                }
+            });
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static final class Coalescer {
+        private CompletableFuture<Object> running;
+        private CompletableFuture<Object> pending;
+        private Call<?> pendingCall;
+    }
+}
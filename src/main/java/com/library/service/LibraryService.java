@@ -1,26 +1,55 @@
 package com.library.service;
 
+import com.library.event.EventBus;
+import com.library.model.BatchItemResult;
 import com.library.model.Book;
+import com.library.model.BookCopy;
 import com.library.model.BookDetail;
+import com.library.model.BookFilter;
+import com.library.model.BorrowRequest;
+import com.library.model.BorrowingPolicy;
 import com.library.model.Category;
+import com.library.model.CirculationResult;
 import com.library.model.Loan;
+import com.library.model.LoanCursor;
 import com.library.model.LoanDetail;
+import com.library.model.LoanFilter;
+import com.library.model.Page;
+import com.library.model.PaymentRequest;
 import com.library.model.Publisher;
 import com.library.model.Reader;
+import com.library.model.ReaderStanding;
+import com.library.model.Reservation;
+import com.library.model.ReturnRequest;
 import com.library.repository.LibraryRepository;
+import com.library.search.CatalogIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public class LibraryService {
+    private static final Logger log = LoggerFactory.getLogger(LibraryService.class);
+
     private final LibraryRepository repository;
-    private final double dailyFine;
+    private final long dailyFineCents;
+    // 启用本地目录索引后图书搜索不再访问数据库
+    private volatile CatalogIndex catalogIndex;
 
-    public LibraryService(LibraryRepository repository, double dailyFine) {
+    public LibraryService(LibraryRepository repository, long dailyFineCents) {
         this.repository = repository;
-        this.dailyFine = dailyFine;
+        this.dailyFineCents = dailyFineCents;
     }
 
     public void addBook(Book book) throws SQLException {
@@ -31,24 +60,128 @@ public class LibraryService {
         repository.insertReader(reader);
     }
 
-    public void borrowBook(long readerId, long bookId, LocalDate dueDate) throws SQLException {
-        repository.borrowBook(readerId, bookId, dueDate);
+    public CirculationResult borrowBook(long readerId, long bookId, LocalDate dueDate) throws SQLException {
+        return repository.borrowBook(readerId, bookId, dueDate);
+    }
+
+    public CirculationResult borrowByBarcode(long readerId, String barcode, LocalDate dueDate) throws SQLException {
+        return repository.borrowByBarcode(readerId, barcode.trim(), dueDate);
+    }
+
+    public Optional<BookCopy> findCopyByBarcode(String barcode) throws SQLException {
+        return repository.findCopyByBarcode(barcode.trim());
+    }
+
+    public List<BookCopy> listCopies(long bookId) throws SQLException {
+        return repository.listCopies(bookId);
+    }
+
+    public BookCopy addCopy(long bookId, String barcode, String location) throws SQLException {
+        return repository.addCopy(bookId, barcode.trim(), location);
     }
 
-    public void renewLoan(long loanId, LocalDate newDueDate) throws SQLException {
-        repository.renewLoan(loanId, newDueDate);
+    public CirculationResult renewLoan(long loanId, LocalDate newDueDate) throws SQLException {
+        return repository.renewLoan(loanId, newDueDate);
     }
 
-    public double returnBook(long loanId, LocalDate dueDate, LocalDate returnedDate) throws SQLException {
-        double fine = calculateFine(dueDate, returnedDate);
-        repository.returnBook(loanId, fine);
-        return fine;
+    public CirculationResult returnBook(long loanId, LocalDate dueDate, LocalDate returnedDate) throws SQLException {
+        long fineCents = calculateFine(dueDate, returnedDate);
+        return repository.returnBook(loanId, fineCents);
+    }
+
+    // 只凭借阅 ID 归还（如扫码），按主键取出这一笔借阅的到期日计算罚金
+    public CirculationResult returnBook(long loanId, LocalDate returnedDate) throws SQLException {
+        LoanDetail loan = repository.findLoanById(loanId)
+                .orElseThrow(() -> new SQLException("未找到对应的借阅记录"));
+        if (loan.returnedDate() != null) {
+            throw new SQLException("该借阅已归还");
+        }
+        return returnBook(loanId, loan.dueDate(), returnedDate);
+    }
+
+    public List<BatchItemResult> borrowBooks(List<BorrowRequest> requests) throws SQLException {
+        return repository.borrowBooks(requests);
+    }
+
+    public List<BatchItemResult> returnBooks(List<ReturnRequest> requests) throws SQLException {
+        return repository.returnBooks(requests, this::calculateFine);
+    }
+
+    public Reservation reserve(long readerId, long bookId) throws SQLException {
+        return repository.reserve(readerId, bookId);
+    }
+
+    public Reservation cancelReservation(long reservationId) throws SQLException {
+        return repository.cancelReservation(reservationId);
+    }
+
+    public List<Reservation> findReservationsByReader(long readerId) throws SQLException {
+        return repository.findReservationsByReader(readerId);
+    }
+
+    public List<Reservation> findReservationQueue(long bookId) throws SQLException {
+        return repository.findReservationQueue(bookId);
+    }
+
+    /** 每隔 interval 清理一次过期预约；调用方负责关闭。 */
+    public ReservationSweeper startReservationSweeper(Duration interval) {
+        ReservationSweeper sweeper = new ReservationSweeper(repository);
+        sweeper.start(interval);
+        return sweeper;
+    }
+
+    public BorrowingPolicy borrowingPolicy() throws SQLException {
+        return repository.borrowingPolicy();
+    }
+
+    public void updateBorrowingPolicy(BorrowingPolicy policy) throws SQLException {
+        repository.updatePolicy(policy);
+    }
+
+    public Optional<ReaderStanding> findReaderStanding(long readerId) throws SQLException {
+        return repository.findReaderStanding(readerId);
+    }
+
+    /** 每隔 interval 重新载入借阅规则；调用方负责关闭。 */
+    public PolicyReloader startPolicyReloader(Duration interval) {
+        PolicyReloader reloader = new PolicyReloader(repository);
+        reloader.start(interval);
+        return reloader;
+    }
+
+    /** 使用本服务的日罚金标准；调用方负责关闭。 */
+    public OverdueEngine newOverdueEngine(int parallelism) {
+        return new OverdueEngine(repository, dailyFineCents, parallelism);
+    }
+
+    /** 本服务所用仓库提交的变更，以及 OutboxTailer 转发的其他终端的变更。 */
+    public EventBus events() {
+        return repository.events();
+    }
+
+    /** 开始把其他终端写入 event_outbox 的事件转发到 {@link #events()}；调用方负责关闭。 */
+    public OutboxTailer startOutboxTailer(Duration pollInterval) throws SQLException {
+        OutboxTailer tailer = new OutboxTailer(repository);
+        tailer.start(pollInterval);
+        return tailer;
+    }
+
+    public List<BatchItemResult> recordPayments(List<PaymentRequest> payments) throws SQLException {
+        return repository.recordPayments(payments);
     }
 
     public List<Loan> findLoansByReader(long readerId) throws SQLException {
         return repository.findLoansByReader(readerId);
     }
 
+    public int forEachReaderLoan(long readerId, Consumer<? super LoanDetail> consumer) throws SQLException {
+        return repository.forEachReaderLoan(readerId, consumer);
+    }
+
+    public int forEachReaderLoan(Consumer<? super LoanDetail> consumer) throws SQLException {
+        return repository.forEachReaderLoan(consumer);
+    }
+
     public long saveCategory(String name) throws SQLException {
         return repository.upsertCategory(name);
     }
@@ -77,10 +210,124 @@ public class LibraryService {
         return repository.listLoanDetails();
     }
 
-    private double calculateFine(LocalDate dueDate, LocalDate returnedDate) {
+    public Optional<BookDetail> findBookById(long id) throws SQLException {
+        return repository.findBookById(id);
+    }
+
+    public Optional<BookDetail> findBookByIsbn(String isbn) throws SQLException {
+        return repository.findBookByIsbn(isbn);
+    }
+
+    public Optional<Reader> findReaderById(long id) throws SQLException {
+        return repository.findReaderById(id);
+    }
+
+    public Optional<Reader> findReaderByCardNumber(String cardNumber) throws SQLException {
+        return repository.findReaderByCardNumber(cardNumber);
+    }
+
+    public Optional<LoanDetail> findLoanById(long id) throws SQLException {
+        return repository.findLoanById(id);
+    }
+
+    public Map<Long, BookDetail> findBooksByIds(Collection<Long> ids) throws SQLException {
+        return repository.findBooksByIds(ids);
+    }
+
+    public Map<Long, Reader> findReadersByIds(Collection<Long> ids) throws SQLException {
+        return repository.findReadersByIds(ids);
+    }
+
+    public Map<Long, LoanDetail> findLoansByIds(Collection<Long> ids) throws SQLException {
+        return repository.findLoansByIds(ids);
+    }
+
+    public Page<BookDetail, Integer> searchBooks(String query, int offset, int limit) throws SQLException {
+        CatalogIndex index = catalogIndex;
+        if (index != null) {
+            return index.search(query, offset, limit);
+        }
+        return repository.searchBooks(query, offset, limit);
+    }
+
+    /**
+     * 启用本地目录索引：文件存在时先载入上次保存的索引立即可用，再从数据库重建并写回文件。
+     * 重建失败时继续使用载入的索引；两者都不可用时图书搜索仍走数据库。
+     */
+    public void openCatalogIndex(Path file) throws SQLException, IOException {
+        CatalogIndex index = null;
+        if (Files.exists(file)) {
+            try {
+                index = CatalogIndex.load(file, repository);
+                repository.events().subscribe(index);
+                catalogIndex = index;
+            } catch (IOException e) {
+                log.warn("无法载入目录索引 {}，将重新建立", file, e);
+            }
+        }
+        if (index == null) {
+            index = new CatalogIndex(repository);
+            repository.events().subscribe(index);
+        }
+        try {
+            index.rebuild();
+        } catch (SQLException e) {
+            if (catalogIndex == null) {
+                repository.events().unsubscribe(index);
+                throw e;
+            }
+            log.warn("目录索引重建失败，继续使用 {} 中的索引", file, e);
+            return;
+        }
+        catalogIndex = index;
+        index.save(file);
+    }
+
+    public Page<Reader, Integer> searchReaders(String query, int offset, int limit) throws SQLException {
+        return repository.searchReaders(query, offset, limit);
+    }
+
+    public Page<BookDetail, Long> pageBooks(BookFilter filter, Long afterId, int limit) throws SQLException {
+        return repository.listBooksPage(filter, afterId, limit);
+    }
+
+    public Page<Reader, Long> pageReaders(Long afterId, int limit) throws SQLException {
+        return repository.listReadersPage(afterId, limit);
+    }
+
+    public Page<LoanDetail, LoanCursor> pageLoans(LoanFilter filter, LoanCursor after, int limit) throws SQLException {
+        return repository.listLoanDetailsPage(filter, after, limit);
+    }
+
+    public Page<BookDetail, Long> pageBooksAt(BookFilter filter, int offset, int limit) throws SQLException {
+        return repository.listBooksAt(filter, offset, limit);
+    }
+
+    public Page<Reader, Long> pageReadersAt(int offset, int limit) throws SQLException {
+        return repository.listReadersAt(offset, limit);
+    }
+
+    public Page<LoanDetail, LoanCursor> pageLoansAt(LoanFilter filter, int offset, int limit) throws SQLException {
+        return repository.listLoanDetailsAt(filter, offset, limit);
+    }
+
+    public int countBooks(BookFilter filter) throws SQLException {
+        return repository.countBooks(filter);
+    }
+
+    public int countReaders() throws SQLException {
+        return repository.countReaders();
+    }
+
+    public int countLoans(LoanFilter filter) throws SQLException {
+        return repository.countLoanDetails(filter);
+    }
+
+    /** 逾期罚金，单位为分。 */
+    public long calculateFine(LocalDate dueDate, LocalDate returnedDate) {
         if (returnedDate.isAfter(dueDate)) {
             long overdueDays = ChronoUnit.DAYS.between(dueDate, returnedDate);
-            return overdueDays * dailyFine;
+            return Math.multiplyExact(overdueDays, dailyFineCents);
         }
         return 0;
     }
@@ -0,0 +1,124 @@
+package com.library.service;
+
+import com.library.event.EventBus;
+import com.library.event.OutboxEntry;
+import com.library.repository.LibraryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 id 增量读取 event_outbox，把其他终端写入的事件发布到本地 {@link EventBus}，
+ * 使界面和缓存不必轮询业务表就能看到其他终端的借还。从启动时的最新 id 开始，不回放历史事件。
+ * <p>
+ * 自增 id 按插入顺序分配而事务按提交顺序可见，游标之后的空缺可能是尚未提交的事务，
+ * 因此遇到空缺时先停在空缺之前，已读到的后续事件照常发布并记下；空缺超过 GAP_TIMEOUT 仍未出现
+ * 则视为回滚留下的自增空洞并越过。
+ */
+public final class OutboxTailer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(OutboxTailer.class);
+    private static final int BATCH_SIZE = 500;
+    private static final long GAP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final Duration RETENTION = Duration.ofDays(1);
+    private static final long PURGE_INTERVAL_MINUTES = 60;
+    private static final int PURGE_BATCH_SIZE = 10_000;
+
+    private final LibraryRepository repository;
+    private final EventBus bus;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "outbox-tailer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 以下字段只在 scheduler 线程上访问
+    private long cursor;
+    private final Set<Long> delivered = new HashSet<>();
+    private final Map<Long, Long> gaps = new HashMap<>();
+
+    public OutboxTailer(LibraryRepository repository) {
+        this.repository = repository;
+        this.bus = repository.events();
+    }
+
+    /** 从当前最新的事件之后开始，每隔 pollInterval 读取一次，并定期清理超过保留期的事件。 */
+    public void start(Duration pollInterval) throws SQLException {
+        cursor = repository.latestOutboxId();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (SQLException | RuntimeException e) {
+                log.warn("读取事件 outbox 失败，下次轮询重试", e);
+            }
+        }, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                purge();
+            } catch (SQLException | RuntimeException e) {
+                log.warn("清理事件 outbox 失败", e);
+            }
+        }, PURGE_INTERVAL_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    private void poll() throws SQLException {
+        List<OutboxEntry> entries = repository.readOutbox(cursor, BATCH_SIZE);
+        long highest = cursor;
+        for (OutboxEntry entry : entries) {
+            highest = Math.max(highest, entry.id());
+            if (!delivered.add(entry.id())) {
+                continue;
+            }
+            gaps.remove(entry.id());
+            // 本实例的事件在提交后已直接发布；未知类型的事件来自更新版本，跳过
+            if (entry.event() != null && !entry.origin().equals(repository.origin())) {
+                bus.publish(entry.event());
+            }
+        }
+        advance(highest);
+    }
+
+    private void advance(long highest) {
+        long now = System.nanoTime();
+        for (long id = cursor + 1; id <= highest; id++) {
+            if (!delivered.contains(id)) {
+                gaps.putIfAbsent(id, now);
+            }
+        }
+        while (cursor < highest) {
+            long next = cursor + 1;
+            if (!delivered.remove(next)) {
+                Long noticed = gaps.get(next);
+                if (noticed != null && now - noticed < GAP_TIMEOUT_NANOS) {
+                    break;
+                }
+                gaps.remove(next);
+            }
+            cursor = next;
+        }
+    }
+
+    // 多个终端同时清理时各删各的批次，互不影响
+    private void purge() throws SQLException {
+        LocalDateTime before = LocalDateTime.now().minus(RETENTION);
+        int deleted;
+        do {
+            deleted = repository.purgeOutbox(before, PURGE_BATCH_SIZE);
+        } while (deleted == PURGE_BATCH_SIZE);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
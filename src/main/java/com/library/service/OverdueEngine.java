@@ -0,0 +1,140 @@
+package com.library.service;
+
+import com.library.model.FineAccrual;
+import com.library.model.OverdueLoan;
+import com.library.repository.LibraryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 逾期罚金的批量计提。按读者 id 把未归还借阅分成若干段，由多个工作线程并行处理，
+ * 每段在一个短事务里用两条集合 UPDATE 改写罚金有变化的借阅并按差额调整读者的未缴罚金，
+ * 随后读出该段的逾期借阅交给报告。超出时限后不再开始新的分段；计提是增量的，未完成的分段下次运行时补上。
+ */
+public final class OverdueEngine implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(OverdueEngine.class);
+    private static final long READERS_PER_CHUNK = 10_000;
+
+    public record Result(LocalDate asOf, int chunks, int completedChunks, int loansUpdated, int readersUpdated,
+                         int overdueLoans, long elapsedMillis) {
+        public boolean complete() {
+            return completedChunks == chunks;
+        }
+    }
+
+    private record ChunkResult(FineAccrual accrual, List<OverdueLoan> overdue) {
+    }
+
+    private final LibraryRepository repository;
+    private final long dailyFineCents;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "overdue-engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OverdueEngine(LibraryRepository repository, long dailyFineCents, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("并行度必须大于 0");
+        }
+        this.repository = repository;
+        this.dailyFineCents = dailyFineCents;
+        this.workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * 计提截至 asOf 的罚金，逾期借阅按读者 id 顺序交给 report（在调用线程上调用）。
+     * 某一段失败时不再等待其余分段，已提交的分段保持有效。
+     */
+    public Result run(LocalDate asOf, Duration budget, Consumer<OverdueLoan> report) throws SQLException {
+        long began = System.nanoTime();
+        long deadline = began + budget.toNanos();
+        long maxReaderId = repository.maxReaderId();
+        List<Future<ChunkResult>> futures = new ArrayList<>();
+        for (long from = 1; from <= maxReaderId; from += READERS_PER_CHUNK) {
+            long start = from;
+            long end = from + READERS_PER_CHUNK;
+            futures.add(workers.submit(() -> {
+                if (System.nanoTime() - deadline > 0) {
+                    throw new CancellationException();
+                }
+                FineAccrual accrual = repository.accrueFines(start, end, asOf, dailyFineCents);
+                return new ChunkResult(accrual, repository.findOverdueLoans(start, end, asOf));
+            }));
+        }
+
+        int completed = 0;
+        int loans = 0;
+        int readers = 0;
+        int overdue = 0;
+        try {
+            for (Future<ChunkResult> future : futures) {
+                ChunkResult chunk;
+                try {
+                    chunk = future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        continue;
+                    }
+                    throw e.getCause() instanceof SQLException sql ? sql : new SQLException("罚金计提失败", e.getCause());
+                }
+                completed++;
+                loans += chunk.accrual().loansUpdated();
+                readers += chunk.accrual().readersUpdated();
+                overdue += chunk.overdue().size();
+                chunk.overdue().forEach(report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("罚金计提被中断", e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        Result result = new Result(asOf, futures.size(), completed, loans, readers, overdue,
+                (System.nanoTime() - began) / 1_000_000);
+        if (!result.complete()) {
+            log.warn("罚金计提超出时限，完成 {}/{} 段，其余分段下次运行时补上", completed, futures.size());
+        }
+        return result;
+    }
+
+    /** 每天 at 时刻计提当天的罚金；失败只记录日志，次日照常运行。 */
+    public void scheduleDaily(LocalTime at, Duration budget, Consumer<OverdueLoan> report, Consumer<Result> onFinished) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(at);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        long delayMillis = Duration.between(now, next).toMillis();
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                onFinished.accept(run(LocalDate.now(), budget, report));
+            } catch (SQLException | RuntimeException e) {
+                log.error("罚金计提失败", e);
+            }
+        }, delayMillis, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+}
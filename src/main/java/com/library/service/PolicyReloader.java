@@ -0,0 +1,52 @@
+package com.library.service;
+
+import com.library.model.BorrowingPolicy;
+import com.library.repository.LibraryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期从 borrowing_policy 重新载入借阅规则，其他终端修改规则后不必重启即可生效。
+ * 载入失败时继续使用上一次的规则，下次运行时重试。
+ */
+public final class PolicyReloader implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(PolicyReloader.class);
+
+    private final LibraryRepository repository;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "policy-reloader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private BorrowingPolicy last;
+
+    public PolicyReloader(LibraryRepository repository) {
+        this.repository = repository;
+    }
+
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                BorrowingPolicy loaded = repository.reloadPolicy();
+                if (last != null && !Objects.equals(last, loaded)) {
+                    log.info("借阅规则已更新：{}", loaded);
+                }
+                last = loaded;
+            } catch (SQLException | RuntimeException e) {
+                log.warn("载入借阅规则失败，继续使用当前规则", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
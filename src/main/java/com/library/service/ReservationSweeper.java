@@ -0,0 +1,66 @@
+package com.library.service;
+
+import com.library.model.ReservationSweep;
+import com.library.repository.LibraryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期清理过期预约：过期未取的留书转给下一位读者或放回在册数，排队超时的预约结束。
+ * 每轮按 BATCH_SIZE 分成多个短事务，直到没有过期的预约。多个终端可以同时运行，
+ * {@link LibraryRepository#expireReservations} 用 SKIP LOCKED 让它们各自处理不同的行。
+ */
+public final class ReservationSweeper implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReservationSweeper.class);
+    private static final int BATCH_SIZE = 500;
+
+    private final LibraryRepository repository;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "reservation-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReservationSweeper(LibraryRepository repository) {
+        this.repository = repository;
+    }
+
+    public void start(Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                ReservationSweep sweep = sweep();
+                if (sweep.expiredHolds() + sweep.expiredWaits() + sweep.reassigned() > 0) {
+                    log.info("预约清理：过期留书 {}，排队超时 {}，重新留书 {}",
+                            sweep.expiredHolds(), sweep.expiredWaits(), sweep.reassigned());
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.warn("清理过期预约失败，下次运行时重试", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public ReservationSweep sweep() throws SQLException {
+        int holds = 0;
+        int waits = 0;
+        int reassigned = 0;
+        ReservationSweep batch;
+        do {
+            batch = repository.expireReservations(BATCH_SIZE);
+            holds += batch.expiredHolds();
+            waits += batch.expiredWaits();
+            reassigned += batch.reassigned();
+        } while (batch.expiredHolds() + batch.expiredWaits() == BATCH_SIZE);
+        return new ReservationSweep(holds, waits, reassigned);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,104 @@
+package com.library.tools;
+
+import com.library.config.DatabaseManager;
+import com.library.model.Book;
+import com.library.model.Reader;
+import com.library.repository.LibraryRepository;
+import com.library.repository.OutOfStockException;
+import com.library.service.LibraryService;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多个线程并发借同一本热门图书，验证库存不会被超借并统计争用下的借阅吞吐量。
+ * 用法：BorrowStressTest [线程数] [在册副本数] [每线程尝试次数]，默认 32、100、10。
+ * 发现超借时以退出码 1 结束。
+ */
+public class BorrowStressTest {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int attempts = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        LibraryService service = new LibraryService(new LibraryRepository(), 150);
+
+        String key = ToolSupport.runKey();
+        long categoryId = service.saveCategory("压测");
+        long publisherId = service.savePublisher("压测");
+        service.addBook(new Book(0, key, "热门图书并发借阅", categoryId, publisherId, null, copies, copies));
+        long bookId = ToolSupport.lookupId("SELECT id FROM books WHERE isbn = ?", key);
+        List<Long> readerIds = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String card = key + "-" + i;
+            service.addReader(new Reader(0, "压测读者" + i, card, LocalDate.now().plusYears(1), 0));
+            readerIds.add(ToolSupport.lookupId("SELECT id FROM readers WHERE card_number = ?", card));
+        }
+
+        LongAdder borrowed = new LongAdder();
+        LongAdder soldOut = new LongAdder();
+        LongAdder failed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        LocalDate dueDate = LocalDate.now().plusDays(30);
+        long began;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long readerId : readerIds) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attempts; i++) {
+                        try {
+                            service.borrowBook(readerId, bookId, dueDate);
+                            borrowed.increment();
+                        } catch (OutOfStockException e) {
+                            soldOut.increment();
+                        } catch (SQLException e) {
+                            failed.increment();
+                        }
+                    }
+                    return null;
+                });
+            }
+            began = System.nanoTime();
+            start.countDown();
+        }
+        long elapsed = System.nanoTime() - began;
+
+        int available;
+        int loans;
+        int loanedCopies;
+        // 每笔借阅应对应一个不同的副本
+        try (Connection connection = DatabaseManager.getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT (SELECT COUNT(*) FROM book_copies c WHERE c.book_id = b.id AND c.status = 'AVAILABLE'), " +
+                             "COUNT(l.id), COUNT(DISTINCT l.copy_id) FROM books b LEFT JOIN loans l ON l.book_id = b.id " +
+                             "WHERE b.id = ? GROUP BY b.id")) {
+            statement.setLong(1, bookId);
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            available = rs.getInt(1);
+            loans = rs.getInt(2);
+            loanedCopies = rs.getInt(3);
+        }
+
+        ToolSupport.report("borrow ok", borrowed.sum(), elapsed);
+        ToolSupport.report("all attempts", (long) threads * attempts, elapsed);
+        System.out.printf("售罄拒绝 %d 次，其他错误 %d 次，借阅记录 %d 条，剩余在册 %d 册%n",
+                soldOut.sum(), failed.sum(), loans, available);
+
+        boolean consistent = available >= 0 && loans == borrowed.sum() && loanedCopies == loans
+                && available + loans == copies;
+        if (!consistent) {
+            System.out.println("检测到超借或库存不一致");
+            System.exit(1);
+        }
+        System.out.println("未发现超借");
+    }
+}
@@ -0,0 +1,69 @@
+package com.library.tools;
+
+import com.library.model.BatchItemResult;
+import com.library.model.Book;
+import com.library.model.BorrowRequest;
+import com.library.model.Reader;
+import com.library.model.ReturnRequest;
+import com.library.repository.LibraryRepository;
+import com.library.service.LibraryService;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对比逐条借还与批量借还的吞吐量。用法：CirculationBenchmark [次数]，默认 1000。
+ * 每次运行都会新建一本压测图书和若干压测读者（按借阅规则的在借册数上限分摊借阅），不影响已有数据。
+ */
+public class CirculationBenchmark {
+    public static void main(String[] args) throws SQLException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        LibraryService service = new LibraryService(new LibraryRepository(), 150);
+
+        String key = ToolSupport.runKey();
+        long categoryId = service.saveCategory("压测");
+        long publisherId = service.savePublisher("压测");
+        service.addBook(new Book(0, key, "借还压测", categoryId, publisherId, null, count, count));
+        long bookId = ToolSupport.lookupId("SELECT id FROM books WHERE isbn = ?", key);
+        int perReader = Math.max(1, service.borrowingPolicy().maxLoans());
+        List<Long> readerIds = new ArrayList<>();
+        for (int i = 0; i * perReader < count; i++) {
+            String card = key + "-" + i;
+            service.addReader(new Reader(0, "压测读者" + i, card, LocalDate.now().plusYears(1), 0));
+            readerIds.add(ToolSupport.lookupId("SELECT id FROM readers WHERE card_number = ?", card));
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate dueDate = today.plusDays(30);
+
+        long start = System.nanoTime();
+        List<Long> loanIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            loanIds.add(service.borrowBook(readerIds.get(i / perReader), bookId, dueDate).loan().id());
+        }
+        ToolSupport.report("single borrow", count, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (long loanId : loanIds) {
+            service.returnBook(loanId, dueDate, today);
+        }
+        ToolSupport.report("single return", count, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        List<BorrowRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(new BorrowRequest(readerIds.get(i / perReader), bookId, dueDate));
+        }
+        List<BatchItemResult> borrowed = service.borrowBooks(requests);
+        ToolSupport.report("batch borrow", count, System.nanoTime() - start);
+
+        List<ReturnRequest> returns = borrowed.stream()
+                .filter(BatchItemResult::success)
+                .map(result -> new ReturnRequest(result.id(), today))
+                .toList();
+        start = System.nanoTime();
+        service.returnBooks(returns);
+        ToolSupport.report("batch return", returns.size(), System.nanoTime() - start);
+    }
+}
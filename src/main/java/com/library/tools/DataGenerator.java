@@ -0,0 +1,141 @@
+package com.library.tools;
+
+import com.library.config.DatabaseManager;
+import com.library.model.Book;
+import com.library.repository.LibraryRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 生成压测用的图书、读者和历史借阅数据。生成的数据以 GEN- 为前缀，
+ * 重复执行只补足差额，因此可以在同一个库上反复运行基准测试。
+ * 历史借阅全部是已归还记录，不影响在册数。
+ */
+public class DataGenerator {
+    private static final String PREFIX = "GEN-";
+    private static final int CHUNK_SIZE = 1000;
+
+    public record Dataset(long[] bookIds, long[] readerIds) {
+    }
+
+    private final DataSource dataSource;
+    private final LibraryRepository repository;
+    private final Random random;
+
+    public DataGenerator(long seed) {
+        this.dataSource = DatabaseManager.getDataSource();
+        this.repository = new LibraryRepository();
+        this.random = new Random(seed);
+    }
+
+    public Dataset seed(int books, int readers, int loans, int copiesPerBook) throws SQLException {
+        long categoryId = repository.upsertCategory("生成数据");
+        long publisherId = repository.upsertPublisher("生成数据");
+
+        int existingBooks = count("SELECT COUNT(*) FROM books WHERE isbn LIKE 'GEN-%'");
+        List<Book> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (int i = existingBooks; i < books; i++) {
+            chunk.add(new Book(0, PREFIX + i, "生成图书 " + i, categoryId, publisherId,
+                    LocalDate.of(1990 + random.nextInt(35), 1 + random.nextInt(12), 1), copiesPerBook, copiesPerBook));
+            if (chunk.size() == CHUNK_SIZE) {
+                repository.upsertBooks(chunk);
+                chunk.clear();
+            }
+        }
+        repository.upsertBooks(chunk);
+
+        int existingReaders = count("SELECT COUNT(*) FROM readers WHERE card_number LIKE 'GEN-%'");
+        insertReaders(existingReaders, readers);
+
+        Dataset dataset = new Dataset(ids("SELECT id FROM books WHERE isbn LIKE 'GEN-%' ORDER BY id"),
+                ids("SELECT id FROM readers WHERE card_number LIKE 'GEN-%' ORDER BY id"));
+        int existingLoans = count("SELECT COUNT(*) FROM loans l JOIN readers r ON r.id = l.reader_id WHERE r.card_number LIKE 'GEN-%'");
+        insertHistoricalLoans(dataset, loans - existingLoans);
+        return dataset;
+    }
+
+    private void insertReaders(int from, int to) throws SQLException {
+        if (from >= to) {
+            return;
+        }
+        String sql = "INSERT INTO readers (name, card_number, card_expiry, outstanding_fine) VALUES (?,?,?,0)";
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = from; i < to; i++) {
+                statement.setString(1, "生成读者 " + i);
+                statement.setString(2, PREFIX + i);
+                statement.setObject(3, LocalDate.now().plusYears(3));
+                statement.addBatch();
+                if ((i - from + 1) % CHUNK_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private void insertHistoricalLoans(Dataset dataset, int count) throws SQLException {
+        if (count <= 0 || dataset.bookIds().length == 0 || dataset.readerIds().length == 0) {
+            return;
+        }
+        String sql = "INSERT INTO loans (book_id, reader_id, borrowed_date, due_date, returned_date, renewals, fine_paid) VALUES (?,?,?,?,?,?,? / 100)";
+        LocalDate today = LocalDate.now();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < count; i++) {
+                LocalDate borrowed = today.minusDays(30 + random.nextInt(3 * 365));
+                LocalDate due = borrowed.plusDays(30);
+                LocalDate returned = borrowed.plusDays(1 + random.nextInt(45));
+                statement.setLong(1, dataset.bookIds()[random.nextInt(dataset.bookIds().length)]);
+                statement.setLong(2, dataset.readerIds()[random.nextInt(dataset.readerIds().length)]);
+                statement.setObject(3, borrowed);
+                statement.setObject(4, due);
+                statement.setObject(5, returned);
+                statement.setInt(6, random.nextInt(3));
+                statement.setLong(7, returned.isAfter(due) ? (returned.toEpochDay() - due.toEpochDay()) * 150 : 0);
+                statement.addBatch();
+                if ((i + 1) % CHUNK_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            ResultSet rs = statement.executeQuery();
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private long[] ids(String sql) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            ResultSet rs = statement.executeQuery();
+            while (rs.next()) {
+                ids.add(rs.getLong(1));
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int loans = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        Dataset dataset = new DataGenerator(42).seed(books, readers, loans, 10);
+        System.out.printf("已生成图书 %d 本，读者 %d 位%n", dataset.bookIds().length, dataset.readerIds().length);
+    }
+}
@@ -0,0 +1,243 @@
+package com.library.tools;
+
+import com.library.config.DatabaseManager;
+import com.library.metrics.LatencyHistogram;
+import com.library.metrics.OperationMetrics;
+import com.library.model.BookFilter;
+import com.library.model.CirculationResult;
+import com.library.model.LoanDetail;
+import com.library.model.LoanFilter;
+import com.library.repository.BorrowingDeniedException;
+import com.library.repository.CachingLibraryRepository;
+import com.library.repository.LookupCache;
+import com.library.repository.OutOfStockException;
+import com.library.service.LibraryService;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模拟多个借还终端并发访问 {@link LibraryService}，用于评估连接池大小和部署规模。
+ * 每个终端是一个虚拟线程，按比例混合执行借阅、续借、归还和查询；图书和读者按 Zipf 分布抽取，
+ * 少数热门图书承担大部分借阅。按终端数逐档运行，每档输出各操作的吞吐量和 p50/p99/p999 延迟，
+ * 吞吐量不再随终端数增长而延迟陡增的那一档就是连接池的拐点。
+ * <p>
+ * 用法：LoadDriver [终端数列表] [每档秒数] [借:续:还:查比例] [图书数] [读者数] [Zipf 指数]，
+ * 默认 8,16,32,64,128、30、30:10:30:30、10000、5000、1.0。
+ */
+public class LoadDriver {
+    private static final int PAGE_SIZE = 20;
+
+    enum Operation {
+        BORROW, RENEW, RETURN, LIST
+    }
+
+    private final LibraryService service;
+    private final long[] bookIds;
+    private final long[] readerIds;
+    private final ZipfSampler books;
+    private final ZipfSampler readers;
+    private final int[] weights;
+
+    LoadDriver(LibraryService service, DataGenerator.Dataset dataset, int[] weights, double exponent) {
+        this.service = service;
+        this.bookIds = dataset.bookIds();
+        this.readerIds = dataset.readerIds();
+        this.books = new ZipfSampler(bookIds.length, exponent, 1);
+        this.readers = new ZipfSampler(readerIds.length, exponent, 2);
+        this.weights = weights.clone();
+    }
+
+    Map<Operation, LatencyHistogram> run(int terminals, long durationNanos) throws InterruptedException {
+        Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+        LongAdder soldOut = new LongAdder();
+        LongAdder denied = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < terminals; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    terminal(histograms, soldOut, denied, System.nanoTime() + durationNanos);
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        if (soldOut.sum() > 0) {
+            System.out.printf("  库存不足拒绝 %d 次（计入借阅延迟，不计为错误）%n", soldOut.sum());
+        }
+        if (denied.sum() > 0) {
+            System.out.printf("  借阅规则拒绝 %d 次（计入所在操作的延迟，不计为错误）%n", denied.sum());
+        }
+        return histograms;
+    }
+
+    private void terminal(Map<Operation, LatencyHistogram> histograms, LongAdder soldOut, LongAdder denied, long deadline) {
+        // 每个终端只续借和归还自己借出的图书，终端之间不会争抢同一笔借阅
+        ArrayDeque<LoanDetail> open = new ArrayDeque<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Operation operation = pick(random);
+            if (open.isEmpty() && (operation == Operation.RENEW || operation == Operation.RETURN)) {
+                operation = Operation.BORROW;
+            }
+            LatencyHistogram histogram = histograms.get(operation);
+            long began = System.nanoTime();
+            try {
+                execute(operation, open, random);
+                histogram.record(System.nanoTime() - began);
+            } catch (OutOfStockException e) {
+                histogram.record(System.nanoTime() - began);
+                soldOut.increment();
+            } catch (BorrowingDeniedException e) {
+                // 热门读者达到在借上限或续借次数上限
+                histogram.record(System.nanoTime() - began);
+                denied.increment();
+            } catch (SQLException e) {
+                histogram.recordError();
+            }
+        }
+        // 归还本轮借出的图书，使下一档从相同的库存开始
+        for (LoanDetail loan : open) {
+            try {
+                service.returnBook(loan.id(), loan.dueDate(), LocalDate.now());
+            } catch (SQLException e) {
+                histograms.get(Operation.RETURN).recordError();
+            }
+        }
+    }
+
+    private void execute(Operation operation, ArrayDeque<LoanDetail> open, ThreadLocalRandom random) throws SQLException {
+        switch (operation) {
+            case BORROW -> {
+                long readerId = readerIds[readers.next()];
+                long bookId = bookIds[books.next()];
+                CirculationResult result = service.borrowBook(readerId, bookId, LocalDate.now().plusDays(30));
+                open.addLast(result.loan());
+            }
+            case RENEW -> {
+                LoanDetail loan = open.pollFirst();
+                try {
+                    CirculationResult result = service.renewLoan(loan.id(), loan.dueDate().plusDays(14));
+                    open.addLast(result.loan());
+                } catch (BorrowingDeniedException e) {
+                    // 达到续借上限的借阅留给之后的归还
+                    open.addLast(loan);
+                    throw e;
+                }
+            }
+            case RETURN -> {
+                LoanDetail loan = open.pollFirst();
+                service.returnBook(loan.id(), loan.dueDate(), LocalDate.now());
+            }
+            case LIST -> {
+                // 查询在读者借阅记录、在册图书列表和扫码查读者/图书之间轮换
+                switch (random.nextInt(3)) {
+                    case 0 -> service.pageLoans(LoanFilter.all().withReader(readerIds[readers.next()]), null, PAGE_SIZE);
+                    case 1 -> service.pageBooks(BookFilter.all().available(), null, PAGE_SIZE);
+                    default -> {
+                        service.findReaderById(readerIds[readers.next()]);
+                        service.findBookById(bookIds[books.next()]);
+                    }
+                }
+            }
+        }
+    }
+
+    private Operation pick(ThreadLocalRandom random) {
+        int total = Arrays.stream(weights).sum();
+        int roll = random.nextInt(total);
+        Operation[] operations = Operation.values();
+        for (int i = 0; i < operations.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return operations[i];
+            }
+        }
+        return Operation.LIST;
+    }
+
+    private static void print(int terminals, Map<Operation, LatencyHistogram> histograms, long durationNanos) {
+        double seconds = durationNanos / 1_000_000_000.0;
+        long total = 0;
+        System.out.printf("终端数 %d%n", terminals);
+        System.out.printf("  %-8s %9s %7s %10s %9s %9s %9s %9s %9s%n",
+                "操作", "次数", "错误", "ops/s", "mean ms", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<Operation, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            total += h.count();
+            System.out.printf("  %-8s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), h.count(), h.errors(), h.count() / seconds, h.meanMillis(),
+                    h.percentileMillis(50), h.percentileMillis(99), h.percentileMillis(99.9), h.maxMillis());
+        }
+        System.out.printf("  合计 %.1f ops/s%n", total / seconds);
+    }
+
+    private static int[] parseMix(String mix) {
+        String[] parts = mix.split(":");
+        if (parts.length != Operation.values().length) {
+            throw new IllegalArgumentException("操作比例格式应为 借:续:还:查，例如 30:10:30:30");
+        }
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            weights[i] = Integer.parseInt(parts[i].trim());
+        }
+        if (Arrays.stream(weights).sum() <= 0) {
+            throw new IllegalArgumentException("操作比例之和必须大于 0");
+        }
+        return weights;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String terminalList = args.length > 0 ? args[0] : "8,16,32,64,128";
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int[] weights = parseMix(args.length > 2 ? args[2] : "30:10:30:30");
+        int bookCount = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        int readerCount = args.length > 4 ? Integer.parseInt(args[4]) : 5_000;
+        double exponent = args.length > 5 ? Double.parseDouble(args[5]) : 1.0;
+
+        List<Integer> steps = new ArrayList<>();
+        for (String step : terminalList.split(",")) {
+            steps.add(Integer.parseInt(step.trim()));
+        }
+
+        System.out.println("生成数据...");
+        DataGenerator.Dataset dataset = new DataGenerator(42).seed(bookCount, readerCount, bookCount * 10, 10);
+        CachingLibraryRepository repository = new CachingLibraryRepository();
+        LibraryService service = new LibraryService(repository, 150);
+        LoadDriver driver = new LoadDriver(service, dataset, weights, exponent);
+
+        long durationNanos = seconds * 1_000_000_000L;
+        for (int terminals : steps) {
+            print(terminals, driver.run(terminals, durationNanos), durationNanos);
+        }
+        System.out.println("缓存统计");
+        for (LookupCache.Stats stats : repository.cacheStats()) {
+            System.out.println("  " + stats);
+        }
+        // 仅在 db.metrics.enabled=true 时有数据
+        List<OperationMetrics> operations = DatabaseManager.getMetrics().operations();
+        if (!operations.isEmpty()) {
+            System.out.println("仓库方法统计");
+            System.out.printf("  %-24s %9s %7s %11s %9s %9s %9s%n", "方法", "次数", "错误", "行数", "mean ms", "p99 ms", "max ms");
+            for (OperationMetrics op : operations) {
+                System.out.printf("  %-24s %9d %7d %11d %9.2f %9.2f %9.2f%n", op.name(), op.getCount(), op.getErrors(),
+                        op.getRows(), op.getMeanMillis(), op.getP99Millis(), op.getMaxMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.library.tools;
+
+import com.library.config.DatabaseManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+final class ToolSupport {
+    private ToolSupport() {
+    }
+
+    static long lookupId(String sql, String key) throws SQLException {
+        try (Connection connection = DatabaseManager.getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, key);
+            ResultSet rs = statement.executeQuery();
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        }
+        throw new SQLException("未找到压测数据: " + key);
+    }
+
+    static String runKey() {
+        return "BENCH-" + Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    static void report(String name, long operations, long nanos) {
+        double seconds = nanos / 1_000_000_000.0;
+        System.out.printf("%-14s %8d ops %10.3f s %12.1f ops/s%n", name, operations, seconds, operations / seconds);
+    }
+}
@@ -0,0 +1,49 @@
+package com.library.tools;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按 Zipf 分布抽样下标：排名 k 的概率与 1/k^s 成正比。
+ * 排名到下标的映射经过一次随机打乱，热点不会集中在 id 最小的那批数据上。
+ */
+final class ZipfSampler {
+    private final double[] cumulative;
+    private final int[] ranks;
+
+    ZipfSampler(int size, double exponent, long seed) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("抽样范围必须大于 0");
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= sum;
+        }
+        ranks = new int[size];
+        for (int i = 0; i < size; i++) {
+            ranks[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = tmp;
+        }
+    }
+
+    int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int k = Arrays.binarySearch(cumulative, u);
+        if (k < 0) {
+            k = -k - 1;
+        }
+        return ranks[Math.min(k, ranks.length - 1)];
+    }
+}
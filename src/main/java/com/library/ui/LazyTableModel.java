@@ -0,0 +1,248 @@
+package com.library.ui;
+
+import com.library.model.Page;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 按块懒加载的表格模型：行数来自 COUNT 查询，行数据按固定大小的块在滚动到时加载，
+ * 只在内存中保留最近访问的若干块。所有状态只在 EDT 上读写，数据库访问在 executor 上执行。
+ */
+public class LazyTableModel<T, C> extends AbstractTableModel {
+    public interface BlockSource<T, C> {
+        int count() throws SQLException;
+
+        Page<T, C> fetchAfter(C cursor, int limit) throws SQLException;
+
+        Page<T, C> fetchAt(int offset, int limit) throws SQLException;
+    }
+
+    public interface CellExtractor<T> {
+        Object valueAt(T row, int column);
+    }
+
+    private final String[] columns;
+    private final BlockSource<T, C> source;
+    private final CellExtractor<T> extractor;
+    private final Executor executor;
+    private final int blockSize;
+
+    private final Map<Integer, List<T>> blocks;
+    // 第 k 块的起始游标（即第 k-1 块最后一行），顺序滚动时可以走键集查询而不是 OFFSET
+    private final Map<Integer, C> blockStarts = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    // 本地插入到表头的新行；已加载的块在数据库中的偏移量随之后移
+    private final List<T> head = new ArrayList<>();
+
+    private Consumer<Exception> errorHandler = e -> { };
+    private int rowCount;
+    private int generation;
+    private boolean counting;
+    private boolean recount;
+
+    public LazyTableModel(String[] columns, BlockSource<T, C> source, CellExtractor<T> extractor,
+                          Executor executor, int blockSize, int maxBlocks) {
+        this.columns = columns.clone();
+        this.source = source;
+        this.extractor = extractor;
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.blocks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    public void setErrorHandler(Consumer<Exception> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    public void refresh() {
+        generation++;
+        blocks.clear();
+        blockStarts.clear();
+        loading.clear();
+        head.clear();
+        // 计数查询进行中时只记下需要重算，连续多次刷新只会多发一次 COUNT
+        if (counting) {
+            recount = true;
+            return;
+        }
+        counting = true;
+        int gen = generation;
+        executor.execute(() -> {
+            try {
+                int count = source.count();
+                SwingUtilities.invokeLater(() -> counted(gen, count));
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> {
+                    counting = false;
+                    recount = false;
+                    errorHandler.accept(e);
+                });
+            }
+        });
+    }
+
+    public T getRow(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rowCount) {
+            return null;
+        }
+        if (rowIndex < head.size()) {
+            return head.get(rowIndex);
+        }
+        int offset = rowIndex - head.size();
+        int block = offset / blockSize;
+        List<T> rows = blocks.get(block);
+        if (rows == null) {
+            load(block);
+            return null;
+        }
+        prefetch(block + 1);
+        int index = offset - block * blockSize;
+        return index < rows.size() ? rows.get(index) : null;
+    }
+
+    public void prepend(T row) {
+        head.add(0, row);
+        rowCount++;
+        fireTableRowsInserted(0, 0);
+    }
+
+    /** 只在已加载的行中查找，不会触发加载；找不到时返回 null。 */
+    public T findLoaded(Predicate<T> match) {
+        for (T row : head) {
+            if (match.test(row)) {
+                return row;
+            }
+        }
+        for (List<T> rows : blocks.values()) {
+            for (T row : rows) {
+                if (match.test(row)) {
+                    return row;
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean update(Predicate<T> match, UnaryOperator<T> change) {
+        boolean updated = false;
+        for (int i = 0; i < head.size(); i++) {
+            if (match.test(head.get(i))) {
+                head.set(i, change.apply(head.get(i)));
+                fireTableRowsUpdated(i, i);
+                updated = true;
+            }
+        }
+        for (Map.Entry<Integer, List<T>> entry : blocks.entrySet()) {
+            List<T> rows = entry.getValue();
+            int first = head.size() + entry.getKey() * blockSize;
+            for (int i = 0; i < rows.size(); i++) {
+                if (match.test(rows.get(i))) {
+                    rows.set(i, change.apply(rows.get(i)));
+                    fireTableRowsUpdated(first + i, first + i);
+                    updated = true;
+                }
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        T row = getRow(rowIndex);
+        return row == null ? null : extractor.valueAt(row, columnIndex);
+    }
+
+    private void counted(int gen, int count) {
+        counting = false;
+        if (recount || gen != generation) {
+            recount = false;
+            refresh();
+            return;
+        }
+        rowCount = count;
+        fireTableDataChanged();
+    }
+
+    private void prefetch(int block) {
+        if (head.size() + block * blockSize < rowCount && !blocks.containsKey(block)) {
+            load(block);
+        }
+    }
+
+    private void load(int block) {
+        if (!loading.add(block)) {
+            return;
+        }
+        int gen = generation;
+        boolean seek = blockStarts.containsKey(block);
+        C cursor = blockStarts.get(block);
+        int offset = head.size() + block * blockSize;
+        executor.execute(() -> {
+            try {
+                Page<T, C> page = seek ? source.fetchAfter(cursor, blockSize) : source.fetchAt(offset, blockSize);
+                SwingUtilities.invokeLater(() -> loaded(gen, block, page));
+            } catch (SQLException e) {
+                SwingUtilities.invokeLater(() -> {
+                    // 失败的块保持在 loading 中，直到下一次 refresh 才重试，避免重绘时反复报错
+                    if (gen == generation) {
+                        errorHandler.accept(e);
+                    }
+                });
+            }
+        });
+    }
+
+    private void loaded(int gen, int block, Page<T, C> page) {
+        if (gen != generation) {
+            return;
+        }
+        loading.remove(block);
+        blocks.put(block, new ArrayList<>(page.items()));
+        if (page.nextCursor() != null) {
+            blockStarts.put(block + 1, page.nextCursor());
+        }
+        int first = head.size() + block * blockSize;
+        int last = Math.min(rowCount, first + blockSize) - 1;
+        if (first <= last) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.library.ui;
 
+import com.library.config.DatabaseConfig;
+import com.library.config.DatabaseManager;
+import com.library.event.DomainEvent;
 import com.library.model.Book;
 import com.library.model.BookDetail;
+import com.library.model.BookFilter;
 import com.library.model.Category;
+import com.library.model.CirculationResult;
+import com.library.model.LoanCursor;
 import com.library.model.LoanDetail;
+import com.library.model.LoanFilter;
+import com.library.model.Money;
+import com.library.model.Page;
 import com.library.model.Publisher;
 import com.library.model.Reader;
-import com.library.repository.LibraryRepository;
+import com.library.model.Reservation;
+import com.library.repository.CachingLibraryRepository;
+import com.library.service.AsyncLibraryService;
 import com.library.service.LibraryService;
 
 import javax.swing.BorderFactory;
@@ -22,56 +33,46 @@ import javax.swing.JTabbedPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
-import javax.swing.table.DefaultTableModel;
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.GridLayout;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class LibraryFrame extends JFrame {
+    private static final int BLOCK_SIZE = 200;
+    private static final int MAX_BLOCKS = 20;
+    private static final int SUGGESTIONS = 20;
+    private static final int SEARCH_DELAY_MILLIS = 250;
+
     private final LibraryService service;
+    private final AsyncLibraryService async;
 
-    private final DefaultTableModel bookTableModel = new DefaultTableModel(new String[]{
-            "ID", "ISBN", "书名", "分类", "出版社", "出版日期", "总数", "在册数"
-    }, 0) {
-        @Override
-        public boolean isCellEditable(int row, int column) {
-            return false;
-        }
-    };
-
-    private final DefaultTableModel readerTableModel = new DefaultTableModel(new String[]{
-            "ID", "姓名", "借阅证号", "到期日", "欠费"
-    }, 0) {
-        @Override
-        public boolean isCellEditable(int row, int column) {
-            return false;
-        }
-    };
-
-    private final DefaultTableModel loanTableModel = new DefaultTableModel(new String[]{
-            "借阅ID", "图书", "读者", "借出日", "到期日", "归还日", "续借次数", "已付罚金"
-    }, 0) {
-        @Override
-        public boolean isCellEditable(int row, int column) {
-            return false;
-        }
-    };
+    private final LazyTableModel<BookDetail, Long> bookTableModel;
+    private final LazyTableModel<Reader, Long> readerTableModel;
+    private final LazyTableModel<LoanDetail, LoanCursor> loanTableModel;
 
     private JComboBox<Category> categoryCombo;
     private JComboBox<Publisher> publisherCombo;
-    private JComboBox<Reader> borrowReaderCombo;
-    private JComboBox<BookDetail> borrowBookCombo;
-
-    private List<BookDetail> bookCache = Collections.emptyList();
-    private List<Reader> readerCache = Collections.emptyList();
-    private List<LoanDetail> loanCache = Collections.emptyList();
+    private TypeAheadField<Reader> borrowReaderField;
+    private TypeAheadField<BookDetail> borrowBookField;
+    private boolean bookReloadQueued;
+    // 在册数变化后待回读的图书，只在 EDT 上访问
+    private final Set<Long> staleStock = new HashSet<>();
+    private boolean stockRefreshing;
 
     public LibraryFrame() {
-        this.service = new LibraryService(new LibraryRepository(), 1.5);
+        this.service = new LibraryService(new CachingLibraryRepository(), 150);
+        this.async = new AsyncLibraryService(service);
+        this.bookTableModel = createBookTableModel();
+        this.readerTableModel = createReaderTableModel();
+        this.loanTableModel = createLoanTableModel();
         setTitle("学校图书借阅管理系统");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1100, 720);
@@ -82,16 +83,35 @@ public class LibraryFrame extends JFrame {
         tabs.addTab("借阅/归还", createLoanPanel());
         add(tabs, BorderLayout.CENTER);
 
-        SwingUtilities.invokeLater(() -> {
-            try {
-                reloadLookups();
-                reloadBooks();
-                reloadReaders();
-                reloadLoans();
-            } catch (Exception e) {
-                showError("初始化数据失败: " + e.getMessage());
-            }
-        });
+        reloadLookups();
+        reloadBooks();
+        reloadReaders();
+        reloadLoans();
+        openCatalogIndex();
+        followOtherDesks();
+        service.startReservationSweeper(Duration.ofMillis(DatabaseManager.getConfig().reservationSweepMs()));
+        service.startPolicyReloader(Duration.ofMillis(DatabaseManager.getConfig().policyRefreshMs()));
+    }
+
+    // 开启 db.events.outbox 时其他终端的借还经事件直接更新表格，不必手动刷新
+    private void followOtherDesks() {
+        DatabaseConfig config = DatabaseManager.getConfig();
+        if (!config.eventOutbox()) {
+            return;
+        }
+        service.events().subscribe(event -> SwingUtilities.invokeLater(() -> applyEvent(event)));
+        async.onEdt(async.submit(s -> s.startOutboxTailer(Duration.ofMillis(config.eventPollMs()))), tailer -> {
+        }, e -> showError("订阅其他终端的变更失败: " + e.getMessage()));
+    }
+
+    // 指定了 library.catalogIndex（索引文件路径）时图书搜索使用本地索引
+    private void openCatalogIndex() {
+        String file = System.getProperty("library.catalogIndex");
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        async.onEdt(async.execute(s -> s.openCatalogIndex(Path.of(file))), ignored -> {
+        }, e -> showError("建立本地图书索引失败: " + e.getMessage()));
     }
 
     private JPanel createBookPanel() {
@@ -141,15 +161,13 @@ public class LibraryFrame extends JFrame {
                 showError("请输入分类名称");
                 return;
             }
-            try {
-                long id = service.saveCategory(name);
-                reloadLookups();
-                selectCategory(id);
+            async.onEdt(async.submit(s -> s.saveCategory(name)), id -> {
                 newCategoryField.setText("");
-                showInfo("分类已保存");
-            } catch (Exception ex) {
-                showError(ex.getMessage());
-            }
+                reloadLookups().thenRun(() -> {
+                    selectCategory(id);
+                    showInfo("分类已保存");
+                });
+            }, this::showFailure);
         });
 
         addPublisherButton.addActionListener(e -> {
@@ -158,15 +176,13 @@ public class LibraryFrame extends JFrame {
                 showError("请输入出版社名称");
                 return;
             }
-            try {
-                long id = service.savePublisher(name);
-                reloadLookups();
-                selectPublisher(id);
+            async.onEdt(async.submit(s -> s.savePublisher(name)), id -> {
                 newPublisherField.setText("");
-                showInfo("出版社已保存");
-            } catch (Exception ex) {
-                showError(ex.getMessage());
-            }
+                reloadLookups().thenRun(() -> {
+                    selectPublisher(id);
+                    showInfo("出版社已保存");
+                });
+            }, this::showFailure);
         });
 
         saveBookButton.addActionListener(e -> {
@@ -189,21 +205,19 @@ public class LibraryFrame extends JFrame {
                     throw new IllegalArgumentException("在册数不能大于总册数");
                 }
 
-                service.addBook(new Book(0, isbn, title, category.id(), publisher.id(), publishedDate, total, available));
-                reloadBooks();
-                showInfo("保存成功");
+                Book book = new Book(0, isbn, title, category.id(), publisher.id(), publishedDate, total, available);
+                async.onEdt(async.execute(s -> s.addBook(book)), ignored -> {
+                    reloadBooks();
+                    showInfo("保存成功");
+                }, this::showFailure);
             } catch (Exception ex) {
                 showError(ex.getMessage());
             }
         });
 
         refreshButton.addActionListener(e -> {
-            try {
-                reloadLookups();
-                reloadBooks();
-            } catch (Exception ex) {
-                showError(ex.getMessage());
-            }
+            reloadLookups();
+            reloadBooks();
         });
 
         row3.add(new JLabel("新分类:"));
@@ -243,22 +257,18 @@ public class LibraryFrame extends JFrame {
                 if (name.isEmpty() || cardNumber.isEmpty()) {
                     throw new IllegalArgumentException("姓名和借阅证号不能为空");
                 }
-                service.addReader(new Reader(0, name, cardNumber, expiry, 0));
-                reloadReaders();
-                reloadLookups();
-                showInfo("保存成功");
+                Reader reader = new Reader(0, name, cardNumber, expiry, 0);
+                async.onEdt(async.execute(s -> s.addReader(reader)), ignored -> {
+                    reloadReaders();
+                    showInfo("保存成功");
+                }, this::showFailure);
             } catch (Exception ex) {
                 showError(ex.getMessage());
             }
         });
 
         refreshButton.addActionListener(e -> {
-            try {
-                reloadReaders();
-                reloadLookups();
-            } catch (Exception ex) {
-                showError(ex.getMessage());
-            }
+            reloadReaders();
         });
 
         form.add(new JLabel("姓名:"));
@@ -278,38 +288,67 @@ public class LibraryFrame extends JFrame {
         JTable table = new JTable(loanTableModel);
         panel.add(new JScrollPane(table), BorderLayout.CENTER);
 
-        JPanel controls = new JPanel(new GridLayout(3, 1));
-        controls.setBorder(BorderFactory.createTitledBorder("借阅/续借/归还"));
+        JPanel controls = new JPanel(new GridLayout(4, 1));
+        controls.setBorder(BorderFactory.createTitledBorder("借阅/续借/归还/预约"));
 
         // 借阅
         JPanel borrowRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        borrowReaderCombo = new JComboBox<>();
-        borrowBookCombo = new JComboBox<>();
+        // 按输入搜索读者和图书，每次停顿只发一条走索引的查询，不再把全部读者和图书装进下拉框
+        borrowReaderField = new TypeAheadField<>(14, SEARCH_DELAY_MILLIS,
+                query -> async.submit(s -> s.searchReaders(query, 0, SUGGESTIONS).items()),
+                r -> r.name() + " (" + r.cardNumber() + ")");
+        borrowBookField = new TypeAheadField<>(18, SEARCH_DELAY_MILLIS,
+                query -> async.submit(s -> s.searchBooks(query, 0, SUGGESTIONS).items()),
+                b -> b + " 在册 " + b.availableCopies());
+        borrowReaderField.setErrorHandler(this::showFailure);
+        borrowBookField.setErrorHandler(this::showFailure);
+        JTextField barcodeField = new JTextField(12);
         JTextField dueDateField = new JTextField(10);
         JButton borrowButton = new JButton("借阅");
         borrowButton.addActionListener(e -> {
             try {
-                Reader reader = (Reader) borrowReaderCombo.getSelectedItem();
-                BookDetail book = (BookDetail) borrowBookCombo.getSelectedItem();
-                if (reader == null || book == null) {
-                    throw new IllegalArgumentException("请选择读者和可借阅的图书");
+                Reader reader = borrowReaderField.getSelected();
+                BookDetail book = borrowBookField.getSelected();
+                String barcode = barcodeField.getText().trim();
+                // 扫了条码时借出该副本，不需要选择图书
+                if (reader == null || (book == null && barcode.isEmpty())) {
+                    throw new IllegalArgumentException("请输入并选择读者和图书，或扫描副本条码");
                 }
+                // 在册数为 0 时读者仍可能借走为他保留的副本，由数据库判断
                 LocalDate dueDate = LocalDate.parse(dueDateField.getText().trim());
-                service.borrowBook(reader.id(), book.id(), dueDate);
-                reloadLoans();
-                reloadBooks();
-                showInfo("借阅成功");
+                async.onEdt(async.submit(s -> barcode.isEmpty()
+                        ? s.borrowBook(reader.id(), book.id(), dueDate)
+                        : s.borrowByBarcode(reader.id(), barcode, dueDate)), result -> {
+                    barcodeField.setText("");
+                    applyCirculation(result, true);
+                    showInfo("借阅成功");
+                }, this::showFailure);
             } catch (Exception ex) {
                 showError(ex.getMessage());
             }
         });
-        borrowRow.add(new JLabel("读者:"));
-        borrowRow.add(borrowReaderCombo);
-        borrowRow.add(new JLabel("图书:"));
-        borrowRow.add(borrowBookCombo);
+        JButton reserveButton = new JButton("预约");
+        reserveButton.addActionListener(e -> {
+            Reader reader = borrowReaderField.getSelected();
+            BookDetail book = borrowBookField.getSelected();
+            if (reader == null || book == null) {
+                showError("请输入并选择读者和图书");
+                return;
+            }
+            async.onEdt(async.submit(s -> s.reserve(reader.id(), book.id())),
+                    reservation -> showInfo("预约成功，预约ID " + reservation.id() + "，排队第 " + reservation.queuePosition() + " 位"),
+                    this::showFailure);
+        });
+        borrowRow.add(new JLabel("读者(姓名/证号):"));
+        borrowRow.add(borrowReaderField);
+        borrowRow.add(new JLabel("图书(书名/ISBN):"));
+        borrowRow.add(borrowBookField);
+        borrowRow.add(new JLabel("或条码:"));
+        borrowRow.add(barcodeField);
         borrowRow.add(new JLabel("到期日(yyyy-MM-dd):"));
         borrowRow.add(dueDateField);
         borrowRow.add(borrowButton);
+        borrowRow.add(reserveButton);
 
         // 续借
         JPanel renewRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -320,9 +359,10 @@ public class LibraryFrame extends JFrame {
             try {
                 long loanId = parseLongField(renewLoanField.getText(), "借阅ID");
                 LocalDate newDate = LocalDate.parse(renewDateField.getText().trim());
-                service.renewLoan(loanId, newDate);
-                reloadLoans();
-                showInfo("续借成功");
+                async.onEdt(async.submit(s -> s.renewLoan(loanId, newDate)), result -> {
+                    applyCirculation(result, false);
+                    showInfo("续借成功");
+                }, this::showFailure);
             } catch (Exception ex) {
                 showError(ex.getMessage());
             }
@@ -341,19 +381,14 @@ public class LibraryFrame extends JFrame {
         returnButton.addActionListener(e -> {
             try {
                 int selected = table.getSelectedRow();
-                LoanDetail detail;
-                if (selected >= 0 && selected < loanCache.size()) {
-                    detail = loanCache.get(selected);
-                } else {
-                    long loanId = parseLongField(returnLoanField.getText(), "借阅ID");
-                    detail = loanCache.stream().filter(l -> l.id() == loanId).findFirst()
-                            .orElseThrow(() -> new IllegalArgumentException("未找到对应的借阅记录"));
-                }
+                LoanDetail detail = selected >= 0 ? loanTableModel.getRow(selected) : null;
+                long loanId = detail != null ? detail.id() : parseLongField(returnLoanField.getText(), "借阅ID");
                 LocalDate returnedDate = LocalDate.parse(returnDateField.getText().trim());
-                double fine = service.returnBook(detail.id(), detail.dueDate(), returnedDate);
-                reloadLoans();
-                reloadBooks();
-                showInfo("归还成功，罚金：" + fine);
+                // 只按借阅 ID 在数据库中取这一行，不依赖表格是否已加载到该行
+                async.onEdt(async.submit(s -> s.returnBook(loanId, returnedDate)), result -> {
+                    applyCirculation(result, false);
+                    showInfo("归还成功，罚金：" + Money.format(result.loan().finePaidCents()));
+                }, this::showFailure);
             } catch (Exception ex) {
                 showError(ex.getMessage());
             }
@@ -364,93 +399,271 @@ public class LibraryFrame extends JFrame {
         returnRow.add(returnDateField);
         returnRow.add(returnButton);
 
+        // 预约
+        JPanel reservationRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JTextField reservationField = new JTextField(6);
+        JButton cancelReservationButton = new JButton("取消预约");
+        cancelReservationButton.addActionListener(e -> {
+            try {
+                long reservationId = parseLongField(reservationField.getText(), "预约ID");
+                async.onEdt(async.submit(s -> s.cancelReservation(reservationId)),
+                        reservation -> showInfo("已取消预约"), this::showFailure);
+            } catch (Exception ex) {
+                showError(ex.getMessage());
+            }
+        });
+        JButton listReservationsButton = new JButton("查看读者预约");
+        listReservationsButton.addActionListener(e -> {
+            Reader reader = borrowReaderField.getSelected();
+            if (reader == null) {
+                showError("请先在借阅一栏选择读者");
+                return;
+            }
+            async.onEdt(async.submit(s -> s.findReservationsByReader(reader.id())),
+                    reservations -> showInfo(describeReservations(reader, reservations)), this::showFailure);
+        });
+        reservationRow.add(new JLabel("预约ID:"));
+        reservationRow.add(reservationField);
+        reservationRow.add(cancelReservationButton);
+        reservationRow.add(listReservationsButton);
+
         controls.add(borrowRow);
         controls.add(renewRow);
         controls.add(returnRow);
+        controls.add(reservationRow);
 
         JPanel south = new JPanel(new BorderLayout());
         south.add(controls, BorderLayout.CENTER);
         JButton refreshButton = new JButton("刷新借阅列表");
         refreshButton.addActionListener(e -> {
-            try {
-                reloadLoans();
-                reloadBooks();
-                reloadLookups();
-            } catch (Exception ex) {
-                showError(ex.getMessage());
-            }
+            reloadLoans();
+            reloadBooks();
+            reloadLookups();
         });
         south.add(refreshButton, BorderLayout.EAST);
         panel.add(south, BorderLayout.SOUTH);
         return panel;
     }
 
-    private void reloadLookups() throws SQLException {
-        List<Category> categories = service.listCategories();
-        List<Publisher> publishers = service.listPublishers();
-        readerCache = service.listReaders();
-        bookCache = service.listBooks();
-
-        categoryCombo.setModel(new DefaultComboBoxModel<>(categories.toArray(Category[]::new)));
-        publisherCombo.setModel(new DefaultComboBoxModel<>(publishers.toArray(Publisher[]::new)));
-        borrowReaderCombo.setModel(new DefaultComboBoxModel<>(readerCache.toArray(Reader[]::new)));
-        borrowBookCombo.setModel(new DefaultComboBoxModel<>(bookCache.stream()
-                .filter(b -> b.availableCopies() > 0)
-                .toArray(BookDetail[]::new)));
+    private static String describeReservations(Reader reader, List<Reservation> reservations) {
+        if (reservations.isEmpty()) {
+            return reader.name() + " 没有未结束的预约";
+        }
+        StringBuilder text = new StringBuilder(reader.name()).append(" 的预约：");
+        for (Reservation reservation : reservations) {
+            text.append('\n').append(reservation.id()).append("  ").append(reservation.bookTitle()).append("  ");
+            if (reservation.status() == Reservation.Status.READY) {
+                text.append("已留书，请于 ").append(reservation.expiresAt().toLocalDate()).append(" 前取书");
+            } else {
+                text.append("排队第 ").append(reservation.queuePosition()).append(" 位");
+            }
+        }
+        return text.toString();
+    }
+
+    private CompletableFuture<Void> reloadLookups() {
+        return async.onEdt(async.reload("lookups", s -> new Lookups(s.listCategories(), s.listPublishers())), lookups -> {
+            categoryCombo.setModel(new DefaultComboBoxModel<>(lookups.categories().toArray(Category[]::new)));
+            publisherCombo.setModel(new DefaultComboBoxModel<>(lookups.publishers().toArray(Publisher[]::new)));
+        }, this::showFailure);
     }
 
-    private void reloadBooks() throws SQLException {
-        bookCache = service.listBooks();
-        bookTableModel.setRowCount(0);
-        for (BookDetail book : bookCache) {
-            bookTableModel.addRow(new Object[]{
-                    book.id(),
-                    book.isbn(),
-                    book.title(),
-                    book.categoryName(),
-                    book.publisherName(),
-                    book.publishedDate(),
-                    book.totalCopies(),
-                    book.availableCopies()
-            });
+    private void reloadBooks() {
+        bookTableModel.refresh();
+    }
+
+    private void reloadReaders() {
+        readerTableModel.refresh();
+    }
+
+    // 借阅/续借/归还后只更新受影响的借阅行和图书行，不重新加载整张表
+    private void applyCirculation(CirculationResult result, boolean created) {
+        showLoan(result.loan(), created);
+        refreshStock(result.loan().bookId());
+    }
+
+    // 只有新借出的借阅插到表头；续借和归还的借阅已计入总行数，所在块未载入时不插入，否则之后各块的偏移都会错一行
+    private void showLoan(LoanDetail loan, boolean created) {
+        if (!loanTableModel.update(l -> l.id() == loan.id(), l -> loan) && created) {
+            loanTableModel.prepend(loan);
+        }
+    }
+
+    // 事件和借还结果中的在册数可能晚于其他终端的修改到达，不直接套用，而是回读已显示的图书。
+    // 回读依次进行，最后一次回读开始于最后一次变化之后，显示的总是最新值
+    private void refreshStock(long bookId) {
+        BookDetail chosen = borrowBookField.getSelected();
+        boolean shown = chosen != null && chosen.id() == bookId;
+        if (!shown && bookTableModel.findLoaded(b -> b.id() == bookId) == null) {
+            return;
+        }
+        staleStock.add(bookId);
+        if (!stockRefreshing) {
+            refreshStaleStock();
+        }
+    }
+
+    private void refreshStaleStock() {
+        if (staleStock.isEmpty()) {
+            stockRefreshing = false;
+            return;
         }
-        borrowBookCombo.setModel(new DefaultComboBoxModel<>(bookCache.stream()
-                .filter(b -> b.availableCopies() > 0)
-                .toArray(BookDetail[]::new)));
+        Set<Long> ids = new HashSet<>(staleStock);
+        staleStock.clear();
+        stockRefreshing = true;
+        async.onEdt(async.submit(s -> s.findBooksByIds(ids)), found -> {
+            found.values().forEach(this::applyBook);
+            refreshStaleStock();
+        }, e -> {
+            stockRefreshing = false;
+            showFailure(e);
+        });
     }
 
-    private void reloadReaders() throws SQLException {
-        readerCache = service.listReaders();
-        readerTableModel.setRowCount(0);
-        for (Reader reader : readerCache) {
-            readerTableModel.addRow(new Object[]{
-                    reader.id(),
-                    reader.name(),
-                    reader.cardNumber(),
-                    reader.cardExpiry(),
-                    reader.outstandingFine()
-            });
+    private void applyBook(BookDetail book) {
+        bookTableModel.update(b -> b.id() == book.id(), b -> book);
+        BookDetail chosen = borrowBookField.getSelected();
+        if (chosen != null && chosen.id() == book.id()) {
+            borrowBookField.setSelected(book);
         }
-        borrowReaderCombo.setModel(new DefaultComboBoxModel<>(readerCache.toArray(Reader[]::new)));
     }
 
-    private void reloadLoans() throws SQLException {
-        loanCache = service.listLoanDetails();
-        loanTableModel.setRowCount(0);
-        for (LoanDetail loan : loanCache) {
-            loanTableModel.addRow(new Object[]{
-                    loan.id(),
-                    loan.bookTitle(),
-                    loan.readerName(),
-                    loan.borrowedDate(),
-                    loan.dueDate(),
-                    loan.returnedDate(),
-                    loan.renewals(),
-                    loan.finePaid()
-            });
+    // 本终端的借还也会收到事件；表格中的行已是最新时不再查询
+    private void applyEvent(DomainEvent event) {
+        switch (event) {
+            case DomainEvent.StockChanged e -> refreshStock(e.bookId());
+            case DomainEvent.LoanCreated e -> {
+                if (loanTableModel.findLoaded(l -> l.id() == e.loanId()) == null) {
+                    refreshLoan(e.loanId(), true);
+                }
+            }
+            case DomainEvent.LoanRenewed e -> {
+                LoanDetail row = loanTableModel.findLoaded(l -> l.id() == e.loanId());
+                if (row != null && !row.dueDate().equals(e.dueDate())) {
+                    refreshLoan(e.loanId(), false);
+                }
+            }
+            case DomainEvent.LoanReturned e -> {
+                LoanDetail row = loanTableModel.findLoaded(l -> l.id() == e.loanId());
+                if (row != null && row.returnedDate() == null) {
+                    refreshLoan(e.loanId(), false);
+                }
+            }
+            case DomainEvent.BookAdded e -> {
+                // 批量导入会连续到达很多条，合并成一次刷新
+                if (!bookReloadQueued) {
+                    bookReloadQueued = true;
+                    SwingUtilities.invokeLater(() -> {
+                        bookReloadQueued = false;
+                        reloadBooks();
+                    });
+                }
+            }
         }
     }
 
+    private void refreshLoan(long loanId, boolean created) {
+        async.onEdt(async.submit(s -> s.findLoanById(loanId)), found -> found.ifPresent(loan -> showLoan(loan, created)),
+                this::showFailure);
+    }
+
+    private void reloadLoans() {
+        loanTableModel.refresh();
+    }
+
+    private LazyTableModel<BookDetail, Long> createBookTableModel() {
+        LazyTableModel<BookDetail, Long> model = new LazyTableModel<>(new String[]{
+                "ID", "ISBN", "书名", "分类", "出版社", "出版日期", "总数", "在册数"
+        }, new LazyTableModel.BlockSource<>() {
+            @Override
+            public int count() throws SQLException {
+                return service.countBooks(BookFilter.all());
+            }
+
+            @Override
+            public Page<BookDetail, Long> fetchAfter(Long cursor, int limit) throws SQLException {
+                return service.pageBooks(BookFilter.all(), cursor, limit);
+            }
+
+            @Override
+            public Page<BookDetail, Long> fetchAt(int offset, int limit) throws SQLException {
+                return service.pageBooksAt(BookFilter.all(), offset, limit);
+            }
+        }, (book, column) -> switch (column) {
+            case 0 -> book.id();
+            case 1 -> book.isbn();
+            case 2 -> book.title();
+            case 3 -> book.categoryName();
+            case 4 -> book.publisherName();
+            case 5 -> book.publishedDate();
+            case 6 -> book.totalCopies();
+            default -> book.availableCopies();
+        }, async.executor(), BLOCK_SIZE, MAX_BLOCKS);
+        model.setErrorHandler(e -> showError("加载图书失败: " + e.getMessage()));
+        return model;
+    }
+
+    private LazyTableModel<Reader, Long> createReaderTableModel() {
+        LazyTableModel<Reader, Long> model = new LazyTableModel<>(new String[]{
+                "ID", "姓名", "借阅证号", "到期日", "欠费"
+        }, new LazyTableModel.BlockSource<>() {
+            @Override
+            public int count() throws SQLException {
+                return service.countReaders();
+            }
+
+            @Override
+            public Page<Reader, Long> fetchAfter(Long cursor, int limit) throws SQLException {
+                return service.pageReaders(cursor, limit);
+            }
+
+            @Override
+            public Page<Reader, Long> fetchAt(int offset, int limit) throws SQLException {
+                return service.pageReadersAt(offset, limit);
+            }
+        }, (reader, column) -> switch (column) {
+            case 0 -> reader.id();
+            case 1 -> reader.name();
+            case 2 -> reader.cardNumber();
+            case 3 -> reader.cardExpiry();
+            default -> Money.format(reader.outstandingFineCents());
+        }, async.executor(), BLOCK_SIZE, MAX_BLOCKS);
+        model.setErrorHandler(e -> showError("加载读者失败: " + e.getMessage()));
+        return model;
+    }
+
+    private LazyTableModel<LoanDetail, LoanCursor> createLoanTableModel() {
+        LazyTableModel<LoanDetail, LoanCursor> model = new LazyTableModel<>(new String[]{
+                "借阅ID", "图书", "读者", "借出日", "到期日", "归还日", "续借次数", "已付罚金"
+        }, new LazyTableModel.BlockSource<>() {
+            @Override
+            public int count() throws SQLException {
+                return service.countLoans(LoanFilter.all());
+            }
+
+            @Override
+            public Page<LoanDetail, LoanCursor> fetchAfter(LoanCursor cursor, int limit) throws SQLException {
+                return service.pageLoans(LoanFilter.all(), cursor, limit);
+            }
+
+            @Override
+            public Page<LoanDetail, LoanCursor> fetchAt(int offset, int limit) throws SQLException {
+                return service.pageLoansAt(LoanFilter.all(), offset, limit);
+            }
+        }, (loan, column) -> switch (column) {
+            case 0 -> loan.id();
+            case 1 -> loan.bookTitle();
+            case 2 -> loan.readerName();
+            case 3 -> loan.borrowedDate();
+            case 4 -> loan.dueDate();
+            case 5 -> loan.returnedDate();
+            case 6 -> loan.renewals();
+            default -> Money.format(loan.finePaidCents());
+        }, async.executor(), BLOCK_SIZE, MAX_BLOCKS);
+        model.setErrorHandler(e -> showError("加载借阅记录失败: " + e.getMessage()));
+        return model;
+    }
+
     private void selectCategory(long id) {
         for (int i = 0; i < categoryCombo.getItemCount(); i++) {
             if (categoryCombo.getItemAt(i).id() == id) {
@@ -481,7 +694,14 @@ public class LibraryFrame extends JFrame {
         JOptionPane.showMessageDialog(this, message, "提示", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    private void showFailure(Throwable error) {
+        showError(error.getMessage() != null ? error.getMessage() : error.toString());
+    }
+
     private void showError(String message) {
         JOptionPane.showMessageDialog(this, message, "错误", JOptionPane.ERROR_MESSAGE);
     }
+
+    private record Lookups(List<Category> categories, List<Publisher> publishers) {
+    }
 }
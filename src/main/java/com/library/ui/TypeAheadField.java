@@ -0,0 +1,200 @@
+package com.library.ui;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 输入即搜索的文本框：停止输入 delay 毫秒后才发起一次查询，发起新查询时取消仍在进行的旧查询，
+ * 结果显示在下拉列表中，用方向键和回车或鼠标选中。所有状态只在 EDT 上读写。
+ */
+public class TypeAheadField<T> extends JTextField {
+    @FunctionalInterface
+    public interface Search<T> {
+        CompletableFuture<List<T>> search(String query);
+    }
+
+    private static final int VISIBLE_ROWS = 10;
+
+    private final Search<T> search;
+    private final Function<T, String> label;
+    private final Timer debounce;
+    private final DefaultListModel<T> suggestions = new DefaultListModel<>();
+    private final JList<T> list = new JList<>(suggestions);
+    private final JPopupMenu popup = new JPopupMenu();
+
+    private CompletableFuture<List<T>> pending;
+    private T selected;
+    private boolean updating;
+    private Consumer<Throwable> errorHandler = e -> { };
+
+    public TypeAheadField(int columns, int delayMillis, Search<T> search, Function<T, String> label) {
+        super(columns);
+        this.search = search;
+        this.label = label;
+        this.debounce = new Timer(delayMillis, e -> runSearch());
+        debounce.setRepeats(false);
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        list.setVisibleRowCount(VISIBLE_ROWS);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                @SuppressWarnings("unchecked")
+                String text = label.apply((T) value);
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index >= 0) {
+                    accept(suggestions.get(index));
+                }
+            }
+        });
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                edited();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                edited();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                edited();
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) {
+                    return;
+                }
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN -> move(1);
+                    case KeyEvent.VK_UP -> move(-1);
+                    case KeyEvent.VK_ENTER -> {
+                        if (list.getSelectedValue() != null) {
+                            accept(list.getSelectedValue());
+                        }
+                    }
+                    case KeyEvent.VK_ESCAPE -> popup.setVisible(false);
+                    default -> {
+                        return;
+                    }
+                }
+                e.consume();
+            }
+        });
+    }
+
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    public T getSelected() {
+        return selected;
+    }
+
+    /** 以编程方式设置选中项，例如借还后用最新的在册数替换当前选中的图书。 */
+    public void setSelected(T item) {
+        selected = item;
+        updating = true;
+        try {
+            setText(item == null ? "" : label.apply(item));
+        } finally {
+            updating = false;
+        }
+    }
+
+    private void edited() {
+        if (updating) {
+            return;
+        }
+        selected = null;
+        debounce.restart();
+    }
+
+    private void runSearch() {
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        String query = getText().trim();
+        if (query.isEmpty()) {
+            popup.setVisible(false);
+            return;
+        }
+        CompletableFuture<List<T>> future = search.search(query);
+        pending = future;
+        future.whenComplete((rows, error) -> SwingUtilities.invokeLater(() -> {
+            // 已被更新的输入取代的查询结果直接丢弃
+            if (future != pending) {
+                return;
+            }
+            pending = null;
+            if (error == null) {
+                show(rows);
+            } else if (!(error instanceof CancellationException)) {
+                errorHandler.accept(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }));
+    }
+
+    private void show(List<T> rows) {
+        suggestions.clear();
+        rows.forEach(suggestions::addElement);
+        if (rows.isEmpty() || !isShowing()) {
+            popup.setVisible(false);
+            return;
+        }
+        list.setSelectedIndex(0);
+        popup.setPopupSize(new Dimension(Math.max(getWidth(), 320), list.getPreferredScrollableViewportSize().height + 8));
+        popup.show(this, 0, getHeight());
+        requestFocusInWindow();
+    }
+
+    private void move(int delta) {
+        int index = list.getSelectedIndex() + delta;
+        if (index >= 0 && index < suggestions.size()) {
+            list.setSelectedIndex(index);
+            list.ensureIndexIsVisible(index);
+        }
+    }
+
+    private void accept(T item) {
+        popup.setVisible(false);
+        setSelected(item);
+    }
+}
@@ -0,0 +1,121 @@
+-- 基线版本：与此前 DatabaseManager 启动时执行的 DDL 一致。
+-- 旧库中表已存在时 CREATE TABLE IF NOT EXISTS 不会补建索引和约束，
+-- 因此末尾单独补建；新库上这些语句报“已存在”，由 SchemaMigrator 忽略。
+
+CREATE TABLE IF NOT EXISTS categories (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(100) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS publishers (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(150) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS books (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    isbn VARCHAR(32) NOT NULL UNIQUE,
+    title VARCHAR(200) NOT NULL,
+    category_id BIGINT NOT NULL,
+    publisher_id BIGINT NOT NULL,
+    published_date DATE,
+    total_copies INT NOT NULL,
+    available_copies INT NOT NULL,
+    INDEX idx_books_category (category_id, id),
+    CONSTRAINT chk_books_available CHECK (available_copies >= 0),
+    CONSTRAINT fk_books_category FOREIGN KEY (category_id) REFERENCES categories(id),
+    CONSTRAINT fk_books_publisher FOREIGN KEY (publisher_id) REFERENCES publishers(id)
+);
+
+CREATE TABLE IF NOT EXISTS readers (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    name VARCHAR(150) NOT NULL,
+    card_number VARCHAR(50) NOT NULL UNIQUE,
+    card_expiry DATE NOT NULL,
+    outstanding_fine DECIMAL(10,2) NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS loans (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    book_id BIGINT NOT NULL,
+    reader_id BIGINT NOT NULL,
+    borrowed_date DATE NOT NULL,
+    due_date DATE NOT NULL,
+    returned_date DATE NULL,
+    renewals INT NOT NULL DEFAULT 0,
+    fine_paid DECIMAL(10,2) NOT NULL DEFAULT 0,
+    -- 借阅列表按 (borrowed_date, id) 做键集分页，并按读者/图书/未归还筛选
+    INDEX idx_loans_borrowed (borrowed_date, id),
+    INDEX idx_loans_reader_borrowed (reader_id, borrowed_date, id),
+    INDEX idx_loans_book_borrowed (book_id, borrowed_date, id),
+    INDEX idx_loans_open_due (returned_date, due_date),
+    CONSTRAINT fk_loans_book FOREIGN KEY (book_id) REFERENCES books(id),
+    CONSTRAINT fk_loans_reader FOREIGN KEY (reader_id) REFERENCES readers(id)
+);
+
+CREATE TABLE IF NOT EXISTS payments (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    reader_id BIGINT NOT NULL,
+    loan_id BIGINT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    paid_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_payments_reader FOREIGN KEY (reader_id) REFERENCES readers(id),
+    CONSTRAINT fk_payments_loan FOREIGN KEY (loan_id) REFERENCES loans(id)
+);
+
+-- 旧库补建索引和约束
+CREATE INDEX idx_books_category ON books (category_id, id);
+ALTER TABLE books ADD CONSTRAINT chk_books_available CHECK (available_copies >= 0);
+CREATE INDEX idx_loans_borrowed ON loans (borrowed_date, id);
+CREATE INDEX idx_loans_reader_borrowed ON loans (reader_id, borrowed_date, id);
+CREATE INDEX idx_loans_book_borrowed ON loans (book_id, borrowed_date, id);
+CREATE INDEX idx_loans_open_due ON loans (returned_date, due_date);
+
+-- 借书时的库存扣减由应用在借阅事务中以
+-- UPDATE books SET available_copies = available_copies - 1 WHERE id = ? AND available_copies > 0
+-- 条件更新完成，因此不再使用插入触发器
+DROP TRIGGER IF EXISTS trg_loans_insert;
+
+-- 触发器：还书时增加在册数量
+DROP TRIGGER IF EXISTS trg_loans_update;
+DELIMITER $$
+CREATE TRIGGER trg_loans_update AFTER UPDATE ON loans
+FOR EACH ROW
+BEGIN
+    IF NEW.returned_date IS NOT NULL AND OLD.returned_date IS NULL THEN
+        UPDATE books SET available_copies = available_copies + 1 WHERE id = NEW.book_id;
+    END IF;
+END$$
+DELIMITER ;
+
+-- 视图：图书库存统计
+CREATE OR REPLACE VIEW view_book_stock AS
+SELECT b.isbn, b.title, b.total_copies AS total_count, b.available_copies AS available_count
+FROM books b;
+
+-- 存储过程：查询读者借阅情况
+DROP PROCEDURE IF EXISTS get_reader_loans;
+DELIMITER $$
+CREATE PROCEDURE get_reader_loans(IN p_reader_id BIGINT)
+BEGIN
+    SELECT l.id AS loan_id,
+           b.title AS book_title,
+           l.borrowed_date,
+           l.due_date,
+           l.returned_date,
+           l.renewals,
+           l.fine_paid
+    FROM loans l
+    JOIN books b ON b.id = l.book_id
+    WHERE l.reader_id = p_reader_id
+    ORDER BY l.borrowed_date DESC;
+END$$
+DELIMITER ;
+
+-- 示例数据
+INSERT IGNORE INTO categories(id, name) VALUES (1, '计算机'), (2, '文学');
+INSERT IGNORE INTO publishers(id, name) VALUES (1, '机械工业出版社'), (2, '清华大学出版社');
+INSERT IGNORE INTO books(id, isbn, title, category_id, publisher_id, published_date, total_copies, available_copies)
+VALUES (1, '978-7-121-15535-2', 'Java 实战', 1, 1, '2020-01-01', 10, 10);
+INSERT IGNORE INTO readers(id, name, card_number, card_expiry)
+VALUES (1, '示例读者', 'CARD-001', DATE_ADD(CURDATE(), INTERVAL 1 YEAR));
@@ -0,0 +1,4 @@
+-- 书名和读者姓名的全文索引，使用 ngram 分词以支持中文；ISBN 和借书证号的前缀查询使用已有的唯一索引。
+-- 在大表上建全文索引会重建表，应在低峰期执行。
+ALTER TABLE books ADD FULLTEXT INDEX ft_books_title (title) WITH PARSER ngram;
+ALTER TABLE readers ADD FULLTEXT INDEX ft_readers_name (name) WITH PARSER ngram;
@@ -0,0 +1,6 @@
+-- 逾期罚金由 OverdueEngine 每日按读者分段批量计提：
+-- loans.accrued_fine 是未归还借阅截至上次计提的罚金，readers.outstanding_fine 是该读者未归还借阅的计提罚金之和，还书时扣回。
+ALTER TABLE loans ADD COLUMN accrued_fine DECIMAL(10,2) NOT NULL DEFAULT 0;
+
+-- 计提按读者 id 区间只扫描未归还的借阅
+CREATE INDEX idx_loans_open_reader ON loans (returned_date, reader_id, due_date);
@@ -0,0 +1,17 @@
+-- 借还和目录变更事件，与业务修改在同一事务内写入；其他终端按 id 增量读取（OutboxTailer）。
+-- 各类事件共用这些列：amount 依事件类型为在册数或罚金（分），event_date 为到期日。
+CREATE TABLE IF NOT EXISTS event_outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_type VARCHAR(20) NOT NULL,
+    book_id BIGINT NULL,
+    loan_id BIGINT NULL,
+    reader_id BIGINT NULL,
+    isbn VARCHAR(32) NULL,
+    event_date DATE NULL,
+    amount BIGINT NULL,
+    origin CHAR(36) NOT NULL,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+);
+
+-- 按时间清理过期事件
+CREATE INDEX idx_event_outbox_created ON event_outbox (created_at);
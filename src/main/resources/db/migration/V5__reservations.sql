@@ -0,0 +1,26 @@
+-- 图书预约：没有在册副本时读者排队，按 id 先后（FIFO）分配归还的副本。
+-- WAITING 排队中，expires_at 为排队期限；READY 已留书，expires_at 为取书期限；
+-- FULFILLED 已借出（loan_id 为对应借阅），CANCELLED 已取消，EXPIRED 过期未取或排队超时。
+-- 留书的副本不计入 books.available_copies，只能由预约的读者借出。
+CREATE TABLE IF NOT EXISTS reservations (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    book_id BIGINT NOT NULL,
+    reader_id BIGINT NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    ready_at TIMESTAMP NULL,
+    expires_at TIMESTAMP NOT NULL,
+    loan_id BIGINT NULL,
+    -- 同一读者对同一本书只能有一个未结束的预约；结束后为 NULL，不参与唯一约束
+    active_reader_id BIGINT AS (CASE WHEN status IN ('WAITING', 'READY') THEN reader_id END) STORED,
+    UNIQUE KEY uk_reservations_active (book_id, active_reader_id),
+    -- 每本书的队首：WHERE book_id = ? AND status = 'WAITING' ORDER BY id
+    INDEX idx_reservations_queue (book_id, status, id),
+    INDEX idx_reservations_reader (reader_id, status),
+    -- 过期清理
+    INDEX idx_reservations_expiry (status, expires_at),
+    CONSTRAINT chk_reservations_status CHECK (status IN ('WAITING', 'READY', 'FULFILLED', 'CANCELLED', 'EXPIRED')),
+    CONSTRAINT fk_reservations_book FOREIGN KEY (book_id) REFERENCES books(id),
+    CONSTRAINT fk_reservations_reader FOREIGN KEY (reader_id) REFERENCES readers(id),
+    CONSTRAINT fk_reservations_loan FOREIGN KEY (loan_id) REFERENCES loans(id)
+);
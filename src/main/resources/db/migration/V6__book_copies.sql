@@ -0,0 +1,61 @@
+-- 按册管理馆藏：每个副本一行，借阅和留书指向具体副本，扫码按条码查副本。
+-- AVAILABLE 在架可借，ON_LOAN 借出，ON_HOLD 为预约读者保留，LOST 丢失，WITHDRAWN 已剔旧。
+-- 在册数由 AVAILABLE 副本数得出，借阅同一本书的事务各自锁定不同的副本行，不再争抢 books 的同一行；
+-- books.available_copies 不再维护，books.total_copies 为未剔旧的副本数。
+CREATE TABLE IF NOT EXISTS book_copies (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    book_id BIGINT NOT NULL,
+    barcode VARCHAR(32) NOT NULL,
+    status VARCHAR(10) NOT NULL DEFAULT 'AVAILABLE',
+    location VARCHAR(100) NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_book_copies_barcode (barcode),
+    -- 取一本书的在架副本和统计在册数：WHERE book_id = ? AND status = 'AVAILABLE'
+    INDEX idx_book_copies_status (book_id, status, id),
+    CONSTRAINT chk_book_copies_status CHECK (status IN ('AVAILABLE', 'ON_LOAN', 'ON_HOLD', 'LOST', 'WITHDRAWN')),
+    CONSTRAINT fk_book_copies_book FOREIGN KEY (book_id) REFERENCES books(id)
+);
+
+ALTER TABLE loans ADD COLUMN copy_id BIGINT NULL;
+ALTER TABLE loans ADD CONSTRAINT fk_loans_copy FOREIGN KEY (copy_id) REFERENCES book_copies(id);
+ALTER TABLE reservations ADD COLUMN copy_id BIGINT NULL;
+ALTER TABLE reservations ADD CONSTRAINT fk_reservations_copy FOREIGN KEY (copy_id) REFERENCES book_copies(id);
+
+-- 还书时由应用把副本放回在架或留给预约读者，不再由触发器加回在册数
+DROP TRIGGER IF EXISTS trg_loans_update;
+
+-- 按总册数为已有图书生成副本，条码为 8 位图书 id 加 4 位序号
+SET SESSION cte_max_recursion_depth = 100000;
+INSERT INTO book_copies (book_id, barcode, status)
+WITH RECURSIVE seq (n) AS (
+    SELECT 1
+    UNION ALL
+    SELECT n + 1 FROM seq WHERE n < (SELECT COALESCE(MAX(total_copies), 0) FROM books)
+)
+SELECT b.id, CONCAT(LPAD(b.id, 8, '0'), '-', LPAD(seq.n, 4, '0')), 'AVAILABLE'
+FROM books b JOIN seq ON seq.n <= b.total_copies
+WHERE NOT EXISTS (SELECT 1 FROM book_copies c WHERE c.book_id = b.id);
+
+-- 未归还的借阅和已留书的预约按 id 顺序各对应一个在架副本
+UPDATE loans l
+JOIN (SELECT id, book_id, ROW_NUMBER() OVER (PARTITION BY book_id ORDER BY id) AS rn
+      FROM loans WHERE returned_date IS NULL AND copy_id IS NULL) o ON o.id = l.id
+JOIN (SELECT id, book_id, ROW_NUMBER() OVER (PARTITION BY book_id ORDER BY id) AS rn
+      FROM book_copies WHERE status = 'AVAILABLE') a ON a.book_id = o.book_id AND a.rn = o.rn
+SET l.copy_id = a.id;
+UPDATE book_copies c JOIN loans l ON l.copy_id = c.id AND l.returned_date IS NULL
+SET c.status = 'ON_LOAN' WHERE c.status = 'AVAILABLE';
+
+UPDATE reservations v
+JOIN (SELECT id, book_id, ROW_NUMBER() OVER (PARTITION BY book_id ORDER BY id) AS rn
+      FROM reservations WHERE status = 'READY' AND copy_id IS NULL) r ON r.id = v.id
+JOIN (SELECT id, book_id, ROW_NUMBER() OVER (PARTITION BY book_id ORDER BY id) AS rn
+      FROM book_copies WHERE status = 'AVAILABLE') a ON a.book_id = r.book_id AND a.rn = r.rn
+SET v.copy_id = a.id;
+UPDATE book_copies c JOIN reservations v ON v.copy_id = c.id AND v.status = 'READY'
+SET c.status = 'ON_HOLD' WHERE c.status = 'AVAILABLE';
+
+CREATE OR REPLACE VIEW view_book_stock AS
+SELECT b.isbn, b.title, b.total_copies AS total_count,
+       (SELECT COUNT(*) FROM book_copies c WHERE c.book_id = b.id AND c.status = 'AVAILABLE') AS available_count
+FROM books b;
@@ -0,0 +1,16 @@
+-- 借阅规则，只有 id = 1 一行。各终端把规则缓存在内存中，每 db.policy.refresh-ms 重新载入。
+-- max_loans 在借册数上限；max_fine 未缴罚金超过该金额时不能借阅和续借；max_renewals 每笔借阅的续借次数上限；
+-- check_card_expiry 为 TRUE 时借阅证过期的读者不能借阅和续借。
+CREATE TABLE IF NOT EXISTS borrowing_policy (
+    id TINYINT PRIMARY KEY,
+    max_loans INT NOT NULL,
+    max_fine DECIMAL(10,2) NOT NULL,
+    max_renewals INT NOT NULL,
+    check_card_expiry BOOLEAN NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    CONSTRAINT chk_borrowing_policy_single CHECK (id = 1),
+    CONSTRAINT chk_borrowing_policy_limits CHECK (max_loans >= 0 AND max_fine >= 0 AND max_renewals >= 0)
+);
+
+INSERT IGNORE INTO borrowing_policy (id, max_loans, max_fine, max_renewals, check_card_expiry)
+VALUES (1, 10, 50.00, 2, TRUE);
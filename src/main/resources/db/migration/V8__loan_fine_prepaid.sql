@@ -0,0 +1,9 @@
+-- 还书前缴纳的罚金记在对应借阅的 fine_prepaid 上：readers.outstanding_fine 是读者未归还借阅的
+-- accrued_fine - fine_prepaid 之和加上与借阅无关的欠款；还书时只扣回和收取尚未缴纳的部分。
+ALTER TABLE loans ADD COLUMN fine_prepaid DECIMAL(10,2) NOT NULL DEFAULT 0;
+
+-- 已记在未归还借阅上的缴款补记到借阅，不超过该借阅已计提的罚金
+UPDATE loans l
+JOIN (SELECT loan_id, SUM(amount) AS paid FROM payments WHERE loan_id IS NOT NULL GROUP BY loan_id) p ON p.loan_id = l.id
+SET l.fine_prepaid = LEAST(l.accrued_fine, p.paid)
+WHERE l.returned_date IS NULL;